@@ -84,6 +84,86 @@ Ext.define('Baff.utility.refdata.RefDataManager', {
     },
     
     
+    /**
+     * Loads the reference data for a number of classes in a single request, populating the store for each class.
+     * The response is tagged by the server so that the browser revalidates it, and it is only transferred again
+     * when the reference data has changed.
+     * @param {String[]} [refdataclasses] The reference data classes to load, or all classes if not specified
+     * @param {Function} [callback] Called once loaded, with a success flag
+     * @param {Object} [scope] The scope of the callback
+     */  
+    loadRefData: function (refdataclasses, callback, scope) {
+        var me = this;
+        
+        if (me.getServiceRootUrl() == null) {
+            
+            if (refdataclasses != null)
+                Ext.Array.each(refdataclasses, me.getRefDataStore, me);
+            
+            if (callback)
+                callback.call(scope || me, true);
+            
+            return;
+        }
+        
+        Ext.Ajax.request({
+            url: me.getServiceRootUrl() + '/findAll.json',
+            method: 'GET',
+            // Allow the browser to cache the response and revalidate it via its ETag
+            disableCaching: false,
+            params: refdataclasses != null ? {refdataclasses: refdataclasses.join(',')} : {},
+            callback: function (options, success, response) {
+                
+                var result = success ? Ext.decode(response.responseText, true) : null;
+                success = result != null && result.success === true;
+                
+                if (success) {
+                    me.loadRefDataRecords(Ext.Array.from(result.data));
+                } else {
+                    Utils.logger.error("Reference data could not be loaded");
+                }
+                
+                if (callback)
+                    callback.call(scope || me, success);
+            }
+        });
+        
+    },
+    
+    /**
+     * Adds reference data records of any class to the store for their class.
+     * @param {Object[]} records The reference data records
+     * @private
+     */  
+    loadRefDataRecords: function (records) {
+        var me = this;
+        var classRecords = {};
+        
+        Ext.Array.each(records, function (record) {
+            var sep = record.key.split('.');
+            var refdataclass = sep[0] + "." + sep[1];
+            
+            if (classRecords[refdataclass] == null)
+                classRecords[refdataclass] = [];
+            
+            classRecords[refdataclass].push(record);
+        });
+        
+        Ext.Object.each(classRecords, function (refdataclass, data) {
+            var store = Ext.getStore(refdataclass);
+            
+            if (store == null) {
+                store = Ext.create('Ext.data.Store', {
+                    storeId: refdataclass,
+                    model: Baff.utility.refdata.RefDataModel
+                });
+            }
+            
+            store.loadData(data);
+        });
+        
+    },
+    
     /**
      * Get the code for a given reference data class and record key.
      * Ensure the reference data has been loaded before calling this method.
@@ -1,12 +1,17 @@
 package com.midrig.baff.app.controller;
 
+import com.midrig.baff.app.service.ServiceResponse;
 import com.midrig.baff.utility.locale.MessageHelper;
+import java.io.IOException;
 import java.util.Map;
 import java.util.Map.Entry;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 /**
  * A ServiceController controls business service operations. 
@@ -37,6 +42,47 @@ public abstract class ServiceController {
         }
         
     }
+    
+    /**
+     * Writes a service response as a Json encoded string, to be returned as the body of the http response.
+     * 
+     * @param resp the service response.
+     * @return the Json encoded string.
+     */
+    protected String writeResponse(ServiceResponse resp) {
+        
+        recordResultType(resp);
+        
+        return resp.toString();
+    }
+    
+    /**
+     * Writes a service response directly to the http response as a Json encoded stream.
+     * This avoids building the full response as a string, which is preferable for large pages of
+     * entities, e.g. those returned via a streamed response.
+     * 
+     * @param resp the service response.
+     * @param response the http response to write to.
+     * @throws IOException if the output stream cannot be obtained.
+     */
+    protected void writeResponse(ServiceResponse resp, HttpServletResponse response) throws IOException {
+        
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        
+        recordResultType(resp);
+        
+        resp.writeJson(response.getOutputStream());
+    }
+    
+    // Records the result type against the current request, for the ServiceRequestFilter
+    private void recordResultType(ServiceResponse resp) {
+        
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        
+        if (attributes != null)
+            attributes.setAttribute(ServiceRequestFilter.RESULT_TYPE_ATTRIBUTE, resp.getResultType(), RequestAttributes.SCOPE_REQUEST);
+    }
   
     
 }
@@ -1,6 +1,9 @@
 
 package com.midrig.baff.app.controller;
 
+import com.midrig.baff.app.service.ServiceResponse;
+import com.midrig.baff.utility.metrics.EndpointMetrics;
+import com.midrig.baff.utility.metrics.ServiceMetrics;
 import java.io.IOException;
 import java.util.Date;
 import javax.servlet.FilterChain;
@@ -17,13 +20,22 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 /**
  * The ServiceRequestFilter can be used to log transaction information.
+ * If {@link ServiceMetrics} are set then the latency, outcome and service result type of each request are also
+ * recorded against its URI.
  */
 public class ServiceRequestFilter extends OncePerRequestFilter{
     
+    /**
+     * The request attribute holding the result type of the service response written for the request.
+     */
+    public static final String RESULT_TYPE_ATTRIBUTE = ServiceRequestFilter.class.getName() + ".resultType";
+    
     final protected Logger logger = LoggerFactory.getLogger("transaction." + this.getClass().getName());
     
     private boolean logTransactions;
     
+    private ServiceMetrics serviceMetrics;
+    
     /**
      * Filters service request.  Audit logic may be applied here.
      * @param request
@@ -61,7 +73,32 @@ public class ServiceRequestFilter extends OncePerRequestFilter{
         
         }
         
-        filterChain.doFilter(request, response);
+        EndpointMetrics endpoint = null;
+        long metricsStartTime = 0;
+        
+        if (serviceMetrics != null) {
+            
+            endpoint = serviceMetrics.getEndpoint(request.getRequestURI().substring(request.getContextPath().length()));
+            endpoint.begin();
+            
+            metricsStartTime = System.nanoTime();
+        }
+        
+        boolean failed = true;
+        
+        try {
+            
+            filterChain.doFilter(request, response);
+            failed = false;
+            
+        } finally {
+            
+            if (endpoint != null) {
+                
+                endpoint.end((System.nanoTime() - metricsStartTime)/1000, (String) request.getAttribute(RESULT_TYPE_ATTRIBUTE),
+                        failed || response.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        }
 
         if (startTime > 0) {
         
@@ -72,9 +109,22 @@ public class ServiceRequestFilter extends OncePerRequestFilter{
         
     }
 
+    /**
+     * Records the result type of the service response written for a request, so that it is included in the metrics.
+     * @param request the http request.
+     * @param resp the service response.
+     */
+    public static void setResultType(HttpServletRequest request, ServiceResponse resp) {
+        request.setAttribute(RESULT_TYPE_ATTRIBUTE, resp.getResultType());
+    }
+
     public void setLogTransactions(boolean logTransactions) {
         this.logTransactions = logTransactions;
     }
 
+    public void setServiceMetrics(ServiceMetrics serviceMetrics) {
+        this.serviceMetrics = serviceMetrics;
+    }
+
     
 }
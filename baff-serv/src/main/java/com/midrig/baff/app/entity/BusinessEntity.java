@@ -2,21 +2,28 @@ package com.midrig.baff.app.entity;
 
 import com.midrig.baff.app.json.JsonItem;
 import com.midrig.baff.app.json.JsonObjectProcessor;
+import com.midrig.baff.app.service.ServiceResponseException;
+import com.midrig.baff.app.service.ServiceResponseFactory;
 import com.midrig.baff.app.service.ValidationError;
+import com.midrig.baff.app.service.ValidationErrorFactory;
 import com.midrig.baff.utility.locale.MessageHelper;
 import java.io.Serializable;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import javax.json.Json;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
-import javax.persistence.Id;
+import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -138,9 +145,10 @@ public abstract class BusinessEntity<ID extends Serializable> extends JsonItem i
         
     /**
      * The baseline version of this entity.
-     * The baseline is used to refer to a snapshot of this entity that can be taken at any time.
+     * The baseline is used to refer to a snapshot of this entity that can be taken at any time, and holds
+     * the persistent field values indexed by the field table of the {@link EntityMetadata}.
      */
-    private JsonObject baselineJsonObject;
+    private Object[] baselineValues;
     
     /**
      * The reference version of this entity.
@@ -182,6 +190,23 @@ public abstract class BusinessEntity<ID extends Serializable> extends JsonItem i
      */  
     public abstract void addJson(JsonObjectBuilder builder);
     
+    /**
+     * Writes this entity as Json to a generator.
+     * By default the fields are built via {@link #addJson(JsonObjectBuilder)} and then written, 
+     * subclasses that return large lists may override this to write their fields directly.
+     * 
+     * @param generator the JsonGenerator to write the Json to, within the entity object.
+     */  
+    public void addJson(JsonGenerator generator) {
+        
+        JsonObjectBuilder builder = Json.createObjectBuilder();
+        addJson(builder);
+        
+        for (Map.Entry<String, JsonValue> entry : builder.build().entrySet()) {
+            generator.write(entry.getKey(), entry.getValue());
+        }
+    }
+    
     /**
      * Sets this entity from Json.
      * Must be overridden by the subclass.
@@ -324,6 +349,57 @@ public abstract class BusinessEntity<ID extends Serializable> extends JsonItem i
         
     }  
     
+    /**
+     * Writes this entity as Json to a generator.
+     * 
+     * @param generator the JsonGenerator to write the Json to, within the entity object.
+     */
+    public void getJson(JsonGenerator generator) {
+        
+        if (getEntityId() != null)
+            writeJsonElement(generator, "entityId", getEntityId().toString());  
+            
+        if (masterEntityId != null)
+            writeJsonElement(generator, "masterEntityId", masterEntityId);
+        
+        if (currencyControl != null)
+            writeJsonElement(generator, "currencyControl", currencyControl);
+            
+        if (versionControl != null)
+            writeJsonElement(generator, "versionControl", versionControl);
+        
+        // Call sub class to process its fields
+        addJson(generator);
+        
+    }
+    
+    /**
+     * Writes this entity as a Json object to a generator.
+     * 
+     * @param generator the JsonGenerator to write the Json to.
+     */
+    @Override
+    public void writeJson(JsonGenerator generator) {
+        
+        generator.writeStartObject();
+        getJson(generator);
+        generator.writeEnd();
+    }
+    
+    /**
+     * Writes this entity as a Json object to a generator for the given property name.
+     * 
+     * @param generator the JsonGenerator to write the Json to.
+     * @param name the property name.
+     */
+    @Override
+    public void writeJson(JsonGenerator generator, String name) {
+        
+        generator.writeStartObject(name);
+        getJson(generator);
+        generator.writeEnd();
+    }
+    
     
     /**
      * Sets this entity from a Json Object.
@@ -379,13 +455,18 @@ public abstract class BusinessEntity<ID extends Serializable> extends JsonItem i
     
     /**
      * Copies the contents of an entity and sets it as a reference.
+     * The persistent fields are copied directly if the entity is of the same class, otherwise via Json.
      * 
      * @param <T> the type of entity.
      * @param target the entity to be copied.
      */  
     public <T extends BusinessEntity> void copyFrom(T target) {
-        JsonObject jsonObject = target.toJson();
-        this.setFromJson (jsonObject);
+        
+        if (target.getClass() == getClass())
+            getMetadata().copyFields(target, this);
+        else
+            this.setFromJson (target.toJson());
+        
         setReferenceEntity(target);
     }
     
@@ -397,11 +478,14 @@ public abstract class BusinessEntity<ID extends Serializable> extends JsonItem i
      * @param fromBaseline flag to indicate if 
      */  
     public <T extends BusinessEntity> void copyFrom(T target, boolean fromBaseline) {
-        if (fromBaseline) {
-            JsonObject baseline = target.getBaseline();
-            if (baseline != null) {
-                this.setFromJson(baseline);
-            }
+        Object[] targetBaseline = ((BusinessEntity) target).baselineValues;
+        
+        if (fromBaseline && targetBaseline != null) {
+            
+            if (target.getClass() == getClass())
+                getMetadata().setFieldValues(this, targetBaseline);
+            else
+                this.setFromJson(target.getBaseline());
         }
         setReferenceEntity(target);
     }
@@ -612,151 +696,288 @@ public abstract class BusinessEntity<ID extends Serializable> extends JsonItem i
     }
    
    /**
-    * Creates an SQL query string to retrieve a list of this type of entity from the database.
+    * Creates a query to retrieve a list of this type of entity from the database.
     * The sorters and filters should be passed in a map of name-value pairs.  To enable filtering on 
     * master entity id {@link masterEntityIdMap} must be set.
     * <p>
-    * Query strings to find the entity and to count the number of entities are returned and can be
-    * obtained via get("FIND") and get("COUNT").
+    * The filter values are bound as parameters, so the query plan is cached in the {@link EntityMetadata}
+    * and reused for any request with the same filter and sort properties.
     * 
     * @param sorters a list of sort parameters to apply to the query.
     * @param filters a list of filter parameters to apply to the query.
-    * @return a map containing a "FIND" and a "COUNT" query string. 
+    * @return the query, from which the find and count queries can be created. 
     */   
-   public HashMap<String, String> createQueryStrings (HashMap<String, String> sorters, HashMap<String, String> filters) {      
+   public EntityQuery createQuery(HashMap<String, String> sorters, HashMap<String, String> filters) {      
        
-        Class entityClass = this.getClass();
-               
+        return createQuery(sorters, filters, null);
+   }
+   
+   /**
+    * Creates a query to retrieve a list of this type of entity from the database, optionally using
+    * keyset pagination.
+    * For keyset pagination the seek values are the sort values of the last entity on the previous page, by
+    * property name, and the identifier is added as a final sort key so that the order is unique; an empty
+    * map requests the first page.  The find query then seeks past these values rather than skipping rows,
+    * so should be executed from the first result.
+    * <p>
+    * If {@link #isPagedWithTotal} is set then the WHERE clause is also created for the alias "c" of the count 
+    * sub-select of the page query.  Both clauses are created from copies of the filters, so they add the same 
+    * parameters in the same order and the sub-select can refer to the parameters of the outer query.
+    * 
+    * @param sorters a list of sort parameters to apply to the query.
+    * @param filters a list of filter parameters to apply to the query.
+    * @param seek the last seen sort values for keyset pagination, or null to use offset pagination.
+    * @return the query, from which the find and count queries can be created. 
+    */   
+   public EntityQuery createQuery(HashMap<String, String> sorters, HashMap<String, String> filters, HashMap<String, String> seek) {      
+       
+        List<Object> parameters = new ArrayList<>();
+        String countWherePart = null;
+        
+        if (isPagedWithTotal()) {
+            
+            HashMap<String, String> countFilters = filters == null ? null : new LinkedHashMap<>(filters);
+            filters = filters == null ? null : new LinkedHashMap<>(filters);
+            
+            countWherePart = createWhereClause(countFilters, new ArrayList<Object>(), "c");
+        }
+        
+        String wherePart = createWhereClause(filters, parameters);
+        int countParameters = parameters.size();
+        String seekPart = "";
+        
+        if (seek != null) {
+            sorters = createKeysetSorters(sorters);
+            seekPart = createSeekClause(sorters, seek, parameters);
+        }
+        
         String orderByPart = createOrderByClause(sorters);
-        String wherePart = createWhereClause(filters);
-          
-        HashMap<String, String> queryStrings = new HashMap<>();
         
-        String findQueryString = "SELECT e FROM " + entityClass.getSimpleName() + " e" + wherePart + orderByPart;
-        String countQueryString = "SELECT COUNT(e) FROM " + entityClass.getSimpleName() + " e" + wherePart;
+        EntityMetadata.QueryPlan plan = getMetadata().getQueryPlan(wherePart, countWherePart, seekPart, orderByPart);
+        
+        logger.debug("findQuery: {}", plan.getFindQueryString());
+        logger.debug("countQuery {} ", plan.getCountQueryString());
+       
+        return new EntityQuery(plan, parameters, countParameters);
+   }
+   
+   /**
+    * Creates the sorters for keyset pagination, which are the known sort properties followed by the
+    * identifier if this is not already sorted on.
+    * 
+    * @param sorters a list of sort parameters to apply to the query.
+    * @return the keyset sorters. 
+    */   
+   protected HashMap<String, String> createKeysetSorters(HashMap<String, String> sorters) {
+       
+        EntityMetadata metadata = getMetadata();
+        LinkedHashMap<String, String> keysetSorters = new LinkedHashMap<>();
+        
+        if (sorters != null) {
+            
+            for (String sortProp : sorters.keySet()) {
+                
+                if (metadata.hasField(sortProp))
+                    keysetSorters.put(sortProp, sorters.get(sortProp));
+            }
+        }
         
-        logger.debug("findQuery: {}", findQueryString);
-        logger.debug("countQuery {} ", countQueryString);
+        if (metadata.getIdFieldName() != null && !keysetSorters.containsKey(metadata.getIdFieldName()))
+            keysetSorters.put(metadata.getIdFieldName(), "ASC");
         
-        queryStrings.put("FIND", findQueryString);
-        queryStrings.put("COUNT", countQueryString);
+        return keysetSorters;
+   }
+   
+   /**
+    * Creates the seek predicate for keyset pagination, which selects the entities that sort after the
+    * last seen values.
+    * This is equivalent to comparing the row of sort values, e.g. "(a, b) &gt; (?, ?)", expanded as 
+    * "a &gt; ? OR (a = ? AND b &gt; ?)" with the comparison reversed for descending sorts.
+    * <p>
+    * A null seek value is matched with IS NULL, and nulls are taken to sort before any other value as 
+    * they do in MySQL, so that e.g. "a &gt; ?" becomes "a IS NOT NULL" after a null ascending value and 
+    * "a &lt; ?" becomes "(a &lt; ? OR a IS NULL)" after a non-null descending value.
+    * <p>
+    * Each sort property must have a seek value, which may be null; otherwise a {@link ServiceResponseException} 
+    * is thrown containing a validation error for the property, whose message is the key "query.seek.missing".
+    * 
+    * @param sorters the keyset sorters, see {@link #createKeysetSorters}.
+    * @param seek the last seen sort values by property name; empty for the first page.
+    * @param parameters the list of parameter values to add to.
+    * @return the seek predicate, or an empty string for the first page. 
+    */   
+   protected String createSeekClause(HashMap<String, String> sorters, HashMap<String, String> seek, List<Object> parameters) {
        
-        return queryStrings;
+        if (seek.isEmpty())
+            return "";
+        
+        EntityMetadata metadata = getMetadata();
+        List<String> keys = new ArrayList<>(sorters.keySet());
+        StringBuilder seekClause = new StringBuilder();
+        
+        for (String key : keys) {
+            
+            if (!seek.containsKey(key)) {
+                
+                List<ValidationError> errors = new ArrayList<>();
+                errors.add(ValidationErrorFactory.getFieldError("query.seek.missing", key, key));
+                throw new ServiceResponseException(ServiceResponseFactory.getValidationFailResponse(errors));
+            }
+        }
+        
+        for (int i=0; i<keys.size(); i++) {
+            
+            String key = keys.get(i);
+            String value = seek.get(key);
+            boolean descending = "DESC".equalsIgnoreCase(sorters.get(key));
+            
+            // Nothing sorts after a null in descending order
+            if (value == null && descending)
+                continue;
+            
+            if (seekClause.length() > 0)
+                seekClause.append(" OR ");
+            
+            seekClause.append("(");
+            
+            for (int j=0; j<i; j++) {
+                
+                String prevKey = keys.get(j);
+                String prevValue = seek.get(prevKey);
+                
+                if (prevValue == null)
+                    seekClause.append("e.").append(prevKey).append(" IS NULL AND ");
+                else
+                    seekClause.append("e.").append(prevKey).append(" = ")
+                            .append(addQueryParameter(parameters, metadata.toQueryValue(prevKey, prevValue)))
+                            .append(" AND ");
+            }
+            
+            if (value == null) {
+                seekClause.append("e.").append(key).append(" IS NOT NULL");
+            
+            } else if (descending) {
+                seekClause.append("(e.").append(key).append(" < ")
+                        .append(addQueryParameter(parameters, metadata.toQueryValue(key, value)))
+                        .append(" OR e.").append(key).append(" IS NULL)");
+            
+            } else {
+                seekClause.append("e.").append(key).append(" > ")
+                        .append(addQueryParameter(parameters, metadata.toQueryValue(key, value)));
+            }
+            
+            seekClause.append(")");
+        }
+        
+        // Nothing sorts after the last seen entity
+        if (seekClause.length() == 0)
+            return "1 = 0";
+        
+        return seekClause.toString();
+   }
+   
+   /**
+    * Gets the metadata for this type of entity.
+    * 
+    * @return the entity metadata.
+    */   
+   public EntityMetadata getMetadata() {
+       return EntityMetadata.getMetadata(this);
    }
    
    /**
     * Creates an SQL ORDER BY clause.
+    * Sort properties that are not fields of this entity are ignored.
     * 
     * @param sorters a list of sort parameters to apply to the query.
     * @return the ORDER BY string. 
     */   
    public String createOrderByClause(HashMap<String, String> sorters) {
        
-        String orderByClause = "";
+        StringBuilder orderByClause = new StringBuilder();
 
         // Process sorters to create an "ORDER BY" clause
         if (sorters != null && sorters.isEmpty() == false) {
         
-            orderByClause = " ORDER BY ";
-            boolean first = true;
+            EntityMetadata metadata = getMetadata();
             
             for (String sortProp : sorters.keySet() ) {
                 
-                String sortDir = sorters.get(sortProp);
-                
-                if (!first)
-                    orderByClause += " , ";
+                if (!metadata.hasField(sortProp)) {
+                    logger.warn("createOrderByClause, ignoring unknown sort property {}", sortProp);
+                    continue;
+                }
                 
-                orderByClause += "e." + sortProp + " " + sortDir;                
-                first = false;
+                String sortDir = "DESC".equalsIgnoreCase(sorters.get(sortProp)) ? "DESC" : "ASC";
                 
+                orderByClause.append(orderByClause.length() == 0 ? " ORDER BY " : " , ");
+                orderByClause.append("e.").append(sortProp).append(" ").append(sortDir);                
             }
         }
         
-        return orderByClause;
+        return orderByClause.toString();
+   }
+   
+    /**
+    * Creates an SQL WHERE clause for the entity alias "e".
+    * 
+    * @param filters a list of filter parameters to apply to the query.
+    * @param parameters the list of parameter values to add to.
+    * @return the WHERE string. 
+    */   
+   public String createWhereClause(HashMap<String, String> filters, List<Object> parameters) {
+       
+        return createWhereClause(filters, parameters, "e");
    }
    
     /**
     * Creates an SQL WHERE clause.
+    * The filters are compiled into a {@link QueryPredicate} whose values are added to the list of parameters
+    * and referenced in the clause by position, e.g. "?1"; override to support complex query logic, using 
+    * {@link #addQueryParameter} for any additional values and the alias to refer to the entity.
     * 
     * @param filters a list of filter parameters to apply to the query.
+    * @param parameters the list of parameter values to add to.
+    * @param alias the alias of the entity in the query.
     * @return the WHERE string. 
     */   
-   public String createWhereClause(HashMap<String, String> filters) {
+   public String createWhereClause(HashMap<String, String> filters, List<Object> parameters, String alias) {
       
-       String whereClause = "";
-        Class entityClass = this.getClass();
-
         // Process filters to create an "WHERE" clause
-        if (filters != null && filters.isEmpty() == false) {
+        if (filters == null || filters.isEmpty())
+            return "";
             
-             // Check if masterentityId
-            String filterValue = filters.get("masterEntityId");
-
-            if (filterValue != null) {
-                addQueryFiltersForMasterEntityId(filterValue, filters);
-                filters.remove("masterEntityId");
-            }
-           
-            boolean first = true;
-            
-            for (String filterProp : filters.keySet() ) {
-                               
-                filterValue = filters.get(filterProp);
-                
-                if (filterValue == null)
-                    continue;
-                
-                if (!first)
-                    whereClause += " AND ";
-                else
-                    whereClause = " WHERE ";
-                
-                if (filterValue.startsWith("[") && filterValue.endsWith("]"))
-                    filterValue = filterValue.substring(1, filterValue.length()-1);
-                
-                if (filterValue.startsWith("%") || filterValue.endsWith("%")) {
-                    whereClause += "UPPER(e." + filterProp + ") LIKE \'" + filterValue.toUpperCase() + "\'";
-                } else {
-                    
-                    Field[] fields = entityClass.getDeclaredFields();
-                   
-                    for (Field field : fields) {
-                      
-                        if (field.getName().equals(filterProp)) {
-
-                            Class clazz = field.getType();
-
-                            if (clazz == String.class || clazz == Timestamp.class) {
-                                filterValue = "\'" + filterValue + "\'";
-                            }
-
-                            break;
-                        }
+        // Check if masterentityId
+        String masterEntityId = filters.get("masterEntityId");
 
-                    }
-                    
-                    whereClause += "e." + filterProp;
-                      
-                    if (filterValue.contains("|")) {
-                        String [] values = filterValue.split("\\|", -1);
-
-                        whereClause += " IN (";
-
-                        for (int i=0; i<values.length-1; i++) {
-                            whereClause += values[i] + ",";
-                        }
-                        whereClause += values[values.length-1] + ")";
-
-                    } else 
-                            whereClause += " = " + filterValue;
-                    }
-                
-                first = false;
-            }     
+        if (masterEntityId != null) {
+            addQueryFiltersForMasterEntityId(masterEntityId, filters);
+            filters.remove("masterEntityId");
         }
         
-        return whereClause;
+        QueryPredicate predicate = QueryPredicate.compile(getMetadata(), filters);
+        
+        if (predicate == null)
+            return "";
+        
+        StringBuilder whereClause = new StringBuilder(" WHERE ");
+        predicate.appendTo(whereClause, alias, parameters);
+        
+        return whereClause.toString();
+   }
+   
+   /**
+    * Adds a value to the list of query parameters.
+    * 
+    * @param parameters the list of parameter values.
+    * @param value the value to add.
+    * @return the positional parameter reference, e.g. "?1". 
+    */   
+   protected String addQueryParameter(List<Object> parameters, Object value) {
+       
+       parameters.add(value);
+       
+       return "?" + parameters.size();
    }
    
    /**
@@ -767,12 +988,13 @@ public abstract class BusinessEntity<ID extends Serializable> extends JsonItem i
     */   
    protected void addQueryFiltersForMasterEntityId(String masterEntityId, HashMap<String, String> filters) {
            
+       String[] mapFields = getMetadata().getMasterEntityIdMap();
+       
        // Split master entity id based on mapping
-       if (masterEntityIdMap != null && masterEntityId != null) {
+       if (mapFields != null && masterEntityId != null) {
            
             // Find the first delimiter
             String[] idFields = masterEntityId.split("\\|", -1);          
-            String[] mapFields = masterEntityIdMap.split("\\|", -1);
                        
             // The array lengths should match
             if (idFields.length == mapFields.length) {
@@ -787,47 +1009,122 @@ public abstract class BusinessEntity<ID extends Serializable> extends JsonItem i
    
    /**
     * Creates an SQL query string to retrieve a copy of this entity from the database.
+    * The entity identifier should be bound as parameter 1.
     * 
     * @return the find query string. 
     */   
    public String createFindQueryString() {        
 
-        Class entityClass = this.getClass();       
-        Field idField = null;
-        
-        for (Field field : entityClass.getDeclaredFields()) {
-            
-            Id idAnnotation = field.getAnnotation(Id.class);
-            if (idAnnotation != null) {
-                    idField = field;
-                    break;
-            }                    
-        }
+        String findQueryString = getMetadata().getFindQueryString();
         
-        if (idField == null) {
+        if (findQueryString == null)
             logger.error("createFindQueryString, failed to find id column for entity");
-            return null;
-        }
-        
-        String findQueryString = "SELECT e FROM " + entityClass.getSimpleName() + " e WHERE e." + idField.getName() + " =  " + this.getEntityId();
         
         return findQueryString;
    }
    
    /**
-    * Gets the baseline.
+    * Gets the baseline as Json.
     * 
-    * @return {@link #baselineJsonObject}.
+    * @return the baseline, or null if not set.
     */   
     protected JsonObject getBaseline() {
-        return baselineJsonObject;
+        
+        if (baselineValues == null)
+            return null;
+        
+        BusinessEntity baseline = getNewInstance();
+        getMetadata().setFieldValues(baseline, baselineValues);
+        
+        return baseline.toJson();
     }
     
     /**
      * Sets the baseline by copying current values.
      */  
     public void setBaseline() {
-        baselineJsonObject = toJson();
+        baselineValues = getMetadata().getFieldValues(this);
+    }
+    
+    /**
+     * Sets the baseline to that of another entity of the same class, so that the changes made to that 
+     * entity can be determined from this one, e.g. from the entity stored by a save.
+     * 
+     * @param source the entity whose baseline is to be shared.
+     */  
+    public void copyBaseline(BusinessEntity source) {
+        baselineValues = source.baselineValues;
+    }
+    
+    /**
+     * Determines if a baseline has been set, which is not the case for a new entity.
+     * 
+     * @return true if there is a baseline.
+     */  
+    public boolean hasBaseline() {
+        return baselineValues != null;
+    }
+    
+    /**
+     * Gets the value of a field when the baseline was set.
+     * 
+     * @param fieldName the name of the field.
+     * @return the baseline value, or null if there is no baseline or no such field.
+     */  
+    public Object getBaselineValue(String fieldName) {
+        
+        if (baselineValues == null)
+            return null;
+        
+        int index = getMetadata().getFieldIndex(fieldName);
+        
+        return index < 0 ? null : baselineValues[index];
+    }
+    
+    /**
+     * Gets the content fields that have changed since the baseline was set.
+     * 
+     * @return the dirty fields indexed by the field table of the {@link EntityMetadata}, or null if there is 
+     * no baseline.
+     */   
+    public BitSet getDirtyFields() {
+        
+        if (baselineValues == null)
+            return null;
+        
+        return getMetadata().getDirtyFields(baselineValues, this);
+    }
+    
+    /**
+     * Gets the names of the content fields that have changed since the baseline was set.
+     * 
+     * @return the dirty field names, or an empty list if there is no baseline.
+     */   
+    public List<String> getDirtyFieldNames() {
+        
+        List<String> names = new ArrayList<>();
+        BitSet dirtyFields = getDirtyFields();
+        
+        if (dirtyFields != null) {
+            for (int i = dirtyFields.nextSetBit(0); i >= 0; i = dirtyFields.nextSetBit(i+1)) {
+                names.add(getMetadata().getFieldName(i));
+            }
+        }
+        
+        return names;
+    }
+    
+    /**
+     * Determines if the entity has changed since the baseline was set.
+     * An entity without a baseline, e.g. a new entity, is always considered dirty.
+     * 
+     * @return true if dirty.
+     */   
+    public boolean isDirty() {
+        
+        BitSet dirtyFields = getDirtyFields();
+        
+        return dirtyFields == null || !dirtyFields.isEmpty();
     }
     
     /**
@@ -903,6 +1200,16 @@ public abstract class BusinessEntity<ID extends Serializable> extends JsonItem i
     public boolean isIsAutoRefreshed() {
         return isAutoRefreshed;
     }
+    
+    /**
+     * Indicates if a page of this entity should be retrieved along with the total count in a single query.
+     * The default value is defined by the 'pagewithtotal' property in 'baff.properties'.
+     * 
+     * @return true if the page and total should be retrieved together.
+     */
+    public boolean isPagedWithTotal() {
+        return entityConfig.isPageWithTotal();
+    }
 
 
 }
@@ -17,6 +17,8 @@ public class EntityConfig {
     private boolean currencyControl;   
     private boolean setMasterOnLoad;
     private boolean autoRefresh;
+    private int countCacheTtl;
+    private boolean pageWithTotal;
     
     public boolean isVersionControl() {
         return this.versionControl;
@@ -34,6 +36,14 @@ public class EntityConfig {
         return this.autoRefresh;
     }
     
+    public int getCountCacheTtl() {
+        return this.countCacheTtl;
+    }
+    
+    public boolean isPageWithTotal() {
+        return this.pageWithTotal;
+    }
+    
     
     public EntityConfig() {
         
@@ -42,6 +52,8 @@ public class EntityConfig {
         currencyControl = true;
         setMasterOnLoad = true;
         autoRefresh = true;
+        countCacheTtl = 0;
+        pageWithTotal = false;
         
         Properties prop = new Properties();
 
@@ -71,6 +83,16 @@ public class EntityConfig {
                     if (property != null)                    
                         autoRefresh = Boolean.parseBoolean(property);
                     
+                    property = prop.getProperty("entity.countcachettl");
+                    
+                    if (property != null)
+                        countCacheTtl = Integer.parseInt(property.trim());
+                    
+                    property = prop.getProperty("entity.pagewithtotal");
+                    
+                    if (property != null)
+                        pageWithTotal = Boolean.parseBoolean(property);
+                    
                 
                 } else {
                      logger.info("Could not load entity config from baff.properties");
@@ -80,9 +102,11 @@ public class EntityConfig {
                 logger.info("Default entity currence control = " + this.isCurrencyControl());
                 logger.info("Default entity set master on load = "  + this.isSetMasterOnLoad());
                 logger.info("Default entity auto refresh = "  + this.isAutoRefreshed());
+                logger.info("Default entity count cache ttl = "  + this.getCountCacheTtl());
+                logger.info("Default entity page with total = "  + this.isPageWithTotal());
                 
 
-        } catch (IOException ex) {
+        } catch (IOException | NumberFormatException ex) {
                 ex.printStackTrace();
         } 
         
@@ -0,0 +1,823 @@
+package com.midrig.baff.app.entity;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.persistence.EntityManager;
+import javax.persistence.Id;
+import javax.persistence.ManyToMany;
+import javax.persistence.OneToMany;
+import javax.persistence.Transient;
+import javax.persistence.TypedQuery;
+import javax.persistence.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * EntityMetadata holds the information about a business entity class that is required to build its queries.
+ * The metadata is built once per entity class, typically at startup via {@link #register}, and held in a
+ * registry so that query generation does not need to reflect on the entity class for each request.
+ * <p>
+ * The metadata also caches a {@link QueryPlan} for each distinct filter and sort shape requested, where the
+ * filter values are bound as parameters rather than included in the query string, along with the result of
+ * recent count queries.  Counts are only cached if the 'countcachettl' property in 'baff.properties' is set,
+ * expire after that time and are invalidated when an entity of the class is saved or removed, and again when
+ * the transaction completes.
+ * <p>
+ * The persistent fields of the entity class, along with the version and master controls held by 
+ * {@link BusinessEntity}, form a field table that is used to copy and snapshot entities directly rather 
+ * than via Json.  Snapshots are compared to identify the dirty fields, i.e. those content fields that have 
+ * changed, where the controls and version fields are not considered content.
+ */
+public class EntityMetadata {
+
+    final private static Logger logger = LoggerFactory.getLogger(EntityMetadata.class);
+
+    /**
+     * The maximum number of query plans cached for an entity class.
+     * Further plans will be created for each request rather than being cached.
+     */
+    final public static int MAX_QUERY_PLANS = 256;
+
+    /**
+     * The maximum number of counts cached for an entity class.
+     * The cached counts are cleared once this is reached.
+     */
+    final public static int MAX_CACHED_COUNTS = 1024;
+
+    /**
+     * The registry of entity metadata by entity class.
+     */
+    final private static ConcurrentMap<Class<?>, EntityMetadata> registry = new ConcurrentHashMap<>();
+
+    /**
+     * The registry of field types by class, including classes referenced by an entity path.
+     */
+    final private static ConcurrentMap<Class<?>, Map<String, Class<?>>> fieldTypeRegistry = new ConcurrentHashMap<>();
+
+    /**
+     * Marks a path that does not resolve to a field.
+     */
+    final private static Class<?> UNKNOWN_TYPE = Void.class;
+
+    /**
+     * The fields of {@link BusinessEntity} that are included in the field table.
+     */
+    final private static List<String> CONTROL_FIELDS = Arrays.asList("masterEntityId", "currencyControl", "versionControl");
+
+    final private Class<?> entityClass;
+    final private String entityName;
+    final private String idFieldName;
+    final private String[] masterEntityIdMap;
+    final private Map<String, Class<?>> fieldTypes;
+    final private String findQueryString;
+    final private Field[] persistentFields;
+    final private BitSet contentFields;
+
+    final private ConcurrentMap<String, Class<?>> pathTypes = new ConcurrentHashMap<>();
+    final private ConcurrentMap<String, QueryPlan> queryPlans = new ConcurrentHashMap<>();
+    final private AtomicInteger planCount = new AtomicInteger();
+    final private ConcurrentMap<String, CachedCount> cachedCounts = new ConcurrentHashMap<>();
+    final private AtomicLong countGeneration = new AtomicLong();
+
+    /**
+     * EntityMetadata should be obtained via {@link #getMetadata}.
+     */
+    private EntityMetadata(BusinessEntity entity) {
+
+        this.entityClass = entity.getClass();
+        this.entityName = entityClass.getSimpleName();
+        this.fieldTypes = getFieldTypes(entityClass);
+
+        if (entity.masterEntityIdMap != null)
+            this.masterEntityIdMap = entity.masterEntityIdMap.split("\\|", -1);
+        else
+            this.masterEntityIdMap = null;
+
+        String idName = null;
+
+        for (Class<?> clazz = entityClass; clazz != null && clazz != BusinessEntity.class; clazz = clazz.getSuperclass()) {
+
+            for (Field field : clazz.getDeclaredFields()) {
+
+                if (field.getAnnotation(Id.class) != null) {
+                    idName = field.getName();
+                    break;
+                }
+            }
+
+            if (idName != null)
+                break;
+        }
+
+        this.idFieldName = idName;
+        this.persistentFields = getPersistentFields(entityClass);
+        this.contentFields = new BitSet(persistentFields.length);
+
+        for (int i=0; i<persistentFields.length; i++) {
+
+            if (persistentFields[i].getDeclaringClass() != BusinessEntity.class 
+                    && persistentFields[i].getAnnotation(Version.class) == null)
+                contentFields.set(i);
+        }
+
+        if (idName != null) {
+            this.findQueryString = "SELECT e FROM " + entityName + " e WHERE e." + idName + " = ?1";
+        } else {
+            logger.error("EntityMetadata, failed to find id column for entity " + entityName);
+            this.findQueryString = null;
+        }
+    }
+
+    /**
+     * Gets the metadata for an entity, building and registering it if necessary.
+     *
+     * @param entity an instance of the entity.
+     * @return the entity metadata.
+     */
+    public static EntityMetadata getMetadata(BusinessEntity entity) {
+
+        EntityMetadata metadata = registry.get(entity.getClass());
+
+        if (metadata == null) {
+
+            metadata = new EntityMetadata(entity);
+            EntityMetadata existing = registry.putIfAbsent(entity.getClass(), metadata);
+
+            if (existing != null)
+                metadata = existing;
+        }
+
+        return metadata;
+    }
+
+    /**
+     * Registers the metadata for an entity class.
+     * This is intended to be called at startup to avoid building the metadata on first use.
+     *
+     * @param entityClass the entity class, which must provide a public no argument constructor.
+     */
+    public static void register(Class<? extends BusinessEntity> entityClass) {
+
+        if (registry.containsKey(entityClass) || Modifier.isAbstract(entityClass.getModifiers()))
+            return;
+
+        try {
+            getMetadata(entityClass.getConstructor().newInstance());
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            logger.warn("Failed to register entity metadata for " + entityClass + ", " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Gets the field types for a class, including those of its superclasses.
+     *
+     * @param clazz the class.
+     * @return the field types by field name.
+     */
+    private static Map<String, Class<?>> getFieldTypes(Class<?> clazz) {
+
+        Map<String, Class<?>> types = fieldTypeRegistry.get(clazz);
+
+        if (types == null) {
+
+            types = new HashMap<>();
+
+            for (Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass()) {
+
+                for (Field field : current.getDeclaredFields()) {
+
+                    if (Modifier.isStatic(field.getModifiers()))
+                        continue;
+
+                    // The subclass field takes precedence
+                    if (!types.containsKey(field.getName()))
+                        types.put(field.getName(), field.getType());
+                }
+            }
+
+            types = Collections.unmodifiableMap(types);
+            fieldTypeRegistry.putIfAbsent(clazz, types);
+        }
+
+        return types;
+    }
+
+    /**
+     * Gets the persistent fields of an entity class, which excludes static, final and transient fields,
+     * collection valued associations and any fields added by the persistence provider.
+     *
+     * @param entityClass the entity class.
+     * @return the accessible fields.
+     */
+    private static Field[] getPersistentFields(Class<?> entityClass) {
+
+        List<Field> fields = new ArrayList<>();
+
+        for (Class<?> clazz = entityClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+
+            for (Field field : clazz.getDeclaredFields()) {
+
+                int modifiers = field.getModifiers();
+
+                if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || Modifier.isTransient(modifiers)
+                        || field.isSynthetic() || field.getName().startsWith("_persistence_") 
+                        || field.getAnnotation(Transient.class) != null
+                        || field.getAnnotation(OneToMany.class) != null || field.getAnnotation(ManyToMany.class) != null)
+                    continue;
+
+                if (clazz == BusinessEntity.class && !CONTROL_FIELDS.contains(field.getName()))
+                    continue;
+
+                field.setAccessible(true);
+                fields.add(field);
+            }
+
+            if (clazz == BusinessEntity.class)
+                break;
+        }
+
+        return fields.toArray(new Field[fields.size()]);
+    }
+
+    /**
+     * Copies the persistent field values from one entity to another of this class.
+     *
+     * @param source the entity to copy from.
+     * @param target the entity to copy to.
+     */
+    public void copyFields(BusinessEntity source, BusinessEntity target) {
+
+        try {
+
+            for (Field field : persistentFields) {
+                field.set(target, field.get(source));
+            }
+
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException("Unable to copy fields of " + entityName, ex);
+        }
+    }
+
+    /**
+     * Gets the persistent field values of an entity of this class, indexed by the field table.
+     *
+     * @param entity the entity.
+     * @return the field values.
+     */
+    public Object[] getFieldValues(BusinessEntity entity) {
+
+        Object[] values = new Object[persistentFields.length];
+
+        try {
+
+            for (int i=0; i<persistentFields.length; i++) {
+                values[i] = persistentFields[i].get(entity);
+            }
+
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException("Unable to get fields of " + entityName, ex);
+        }
+
+        return values;
+    }
+
+    /**
+     * Sets the persistent field values of an entity of this class, indexed by the field table.
+     *
+     * @param entity the entity.
+     * @param values the field values, as obtained via {@link #getFieldValues}.
+     */
+    public void setFieldValues(BusinessEntity entity, Object[] values) {
+
+        try {
+
+            for (int i=0; i<persistentFields.length; i++) {
+                persistentFields[i].set(entity, values[i]);
+            }
+
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException("Unable to set fields of " + entityName, ex);
+        }
+    }
+
+    /**
+     * Gets the content fields of an entity that differ from a snapshot of its field values.
+     *
+     * @param baseline the snapshot, as obtained via {@link #getFieldValues}.
+     * @param entity the entity.
+     * @return the dirty fields, indexed by the field table.
+     */
+    public BitSet getDirtyFields(Object[] baseline, BusinessEntity entity) {
+
+        BitSet dirtyFields = new BitSet(persistentFields.length);
+
+        try {
+
+            for (int i = contentFields.nextSetBit(0); i >= 0; i = contentFields.nextSetBit(i+1)) {
+
+                if (!isSameValue(baseline[i], persistentFields[i].get(entity)))
+                    dirtyFields.set(i);
+            }
+
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException("Unable to get fields of " + entityName, ex);
+        }
+
+        return dirtyFields;
+    }
+
+    /**
+     * Determines if two field values are the same.
+     * Associated entities are the same if they have the same identifier, as references are often 
+     * set from Json as new instances holding only the identifier.
+     */
+    private static boolean isSameValue(Object a, Object b) {
+
+        if (a instanceof BusinessEntity && b instanceof BusinessEntity)
+            return Objects.equals(((BusinessEntity) a).getEntityId(), ((BusinessEntity) b).getEntityId());
+
+        if (a instanceof byte[] && b instanceof byte[])
+            return Arrays.equals((byte[]) a, (byte[]) b);
+
+        return Objects.equals(a, b);
+    }
+
+    /**
+     * Gets the name of a field in the field table.
+     *
+     * @param index the index of the field.
+     * @return the field name.
+     */
+    public String getFieldName(int index) {
+        return persistentFields[index].getName();
+    }
+
+    /**
+     * Gets the index of a field in the field table.
+     *
+     * @param name the field name.
+     * @return the index of the field, or -1 if it is not a persistent field.
+     */
+    public int getFieldIndex(String name) {
+
+        for (int i=0; i<persistentFields.length; i++) {
+
+            if (persistentFields[i].getName().equals(name))
+                return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Gets the entity class.
+     *
+     * @return {@link #entityClass}.
+     */
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * Gets the entity name used in queries.
+     *
+     * @return {@link #entityName}.
+     */
+    public String getEntityName() {
+        return entityName;
+    }
+
+    /**
+     * Gets the name of the identifier field.
+     *
+     * @return {@link #idFieldName}, or null if no identifier field is annotated.
+     */
+    public String getIdFieldName() {
+        return idFieldName;
+    }
+
+    /**
+     * Gets the master entity identifier key field(s).
+     *
+     * @return {@link #masterEntityIdMap}, or null if not set.
+     */
+    public String[] getMasterEntityIdMap() {
+        return masterEntityIdMap;
+    }
+
+    /**
+     * Gets the query string to retrieve an entity by its identifier, which is bound as parameter 1.
+     *
+     * @return {@link #findQueryString}.
+     */
+    public String getFindQueryString() {
+        return findQueryString;
+    }
+
+    /**
+     * Gets the type of the field for a property path, e.g. "name" or "master.masterId".
+     *
+     * @param path the property path relative to the entity.
+     * @return the field type, or null if the path cannot be resolved.
+     */
+    public Class<?> getFieldType(String path) {
+
+        Class<?> type = pathTypes.get(path);
+
+        if (type == null) {
+
+            Class<?> current = entityClass;
+            Map<String, Class<?>> types = fieldTypes;
+
+            for (String name : path.split("\\.")) {
+
+                current = (types == null) ? null : types.get(name);
+
+                if (current == null)
+                    break;
+
+                types = getFieldTypes(current);
+            }
+
+            type = (current == null) ? UNKNOWN_TYPE : current;
+            pathTypes.putIfAbsent(path, type);
+        }
+
+        return (type == UNKNOWN_TYPE) ? null : type;
+    }
+
+    /**
+     * Determines if a property path resolves to a field of the entity.
+     *
+     * @param path the property path relative to the entity.
+     * @return true if the path is known.
+     */
+    public boolean hasField(String path) {
+        return getFieldType(path) != null;
+    }
+
+    /**
+     * Converts a string value into the type of the field for a property path, so that it can be bound
+     * as a query parameter.
+     * If the value cannot be converted then it is returned unchanged.
+     *
+     * @param path the property path relative to the entity.
+     * @param value the string value.
+     * @return the converted value.
+     */
+    public Object toQueryValue(String path, String value) {
+
+        Class<?> type = getFieldType(path);
+
+        if (type == null || value == null || type == String.class)
+            return value;
+
+        try {
+
+            if (type == Integer.class || type == int.class)
+                return Integer.valueOf(value);
+
+            if (type == Long.class || type == long.class)
+                return Long.valueOf(value);
+
+            if (type == Short.class || type == short.class)
+                return Short.valueOf(value);
+
+            if (type == Boolean.class || type == boolean.class)
+                return Boolean.valueOf(value);
+
+            if (type == Double.class || type == double.class)
+                return Double.valueOf(value);
+
+            if (type == BigDecimal.class)
+                return new BigDecimal(value);
+
+            if (Date.class.isAssignableFrom(type)) {
+
+                if (value.length() == 10)
+                    return java.sql.Date.valueOf(value);
+
+                return Timestamp.valueOf(value);
+            }
+
+        } catch (IllegalArgumentException ex) {
+            logger.warn("toQueryValue, unable to convert " + value + " for " + entityName + "." + path);
+        }
+
+        return value;
+    }
+
+    /**
+     * Gets the query plan for the given WHERE and ORDER BY clauses, which should contain parameter
+     * placeholders rather than values.
+     *
+     * @param whereClause the WHERE clause, or an empty string.
+     * @param orderByClause the ORDER BY clause, or an empty string.
+     * @return the query plan.
+     */
+    public QueryPlan getQueryPlan(String whereClause, String orderByClause) {
+
+        return getQueryPlan(whereClause, "", orderByClause);
+    }
+
+    /**
+     * Gets the query plan for the given WHERE, seek and ORDER BY clauses, which should contain parameter
+     * placeholders rather than values.
+     * The seek predicate is only applied to the find query, and its parameters must follow those of the
+     * WHERE clause.
+     *
+     * @param whereClause the WHERE clause, or an empty string.
+     * @param seekClause the keyset seek predicate, or an empty string.
+     * @param orderByClause the ORDER BY clause, or an empty string.
+     * @return the query plan.
+     */
+    public QueryPlan getQueryPlan(String whereClause, String seekClause, String orderByClause) {
+
+        return getQueryPlan(whereClause, null, seekClause, orderByClause);
+    }
+
+    /**
+     * Gets the query plan for the given WHERE, seek and ORDER BY clauses, including a page query whose count 
+     * sub-select applies the given WHERE clause for the alias "c".
+     * The count WHERE clause must refer to the same parameters as the WHERE clause.
+     *
+     * @param whereClause the WHERE clause, or an empty string.
+     * @param countWhereClause the WHERE clause for the count sub-select, or null if no page query is required.
+     * @param seekClause the keyset seek predicate, or an empty string.
+     * @param orderByClause the ORDER BY clause, or an empty string.
+     * @return the query plan.
+     */
+    public QueryPlan getQueryPlan(String whereClause, String countWhereClause, String seekClause, String orderByClause) {
+
+        String key = whereClause + "#" + countWhereClause + "#" + seekClause + "#" + orderByClause;
+        QueryPlan plan = queryPlans.get(key);
+
+        if (plan == null) {
+
+            String seekPart = "";
+
+            if (!seekClause.isEmpty())
+                seekPart = (whereClause.isEmpty() ? " WHERE (" : " AND (") + seekClause + ")";
+
+            String findQuery = "SELECT e FROM " + entityName + " e" + whereClause + seekPart + orderByClause;
+            String countQuery = "SELECT COUNT(e) FROM " + entityName + " e" + whereClause;
+
+            // The page query counts all matching entities in a sub-select, which refers to the entity as "c"
+            String pageQuery = null;
+            
+            if (countWhereClause != null)
+                pageQuery = "SELECT e, (SELECT COUNT(c) FROM " + entityName + " c" + countWhereClause + ") FROM " 
+                        + entityName + " e" + whereClause + seekPart + orderByClause;
+
+            if (queryPlans.size() < MAX_QUERY_PLANS) {
+
+                int planId = planCount.incrementAndGet();
+                plan = new QueryPlan(findQuery, countQuery, pageQuery, "baff." + entityName + "." + planId);
+
+                QueryPlan existing = queryPlans.putIfAbsent(key, plan);
+
+                if (existing != null)
+                    plan = existing;
+
+            } else {
+
+                logger.warn("getQueryPlan, query plan cache is full for " + entityName);
+                plan = new QueryPlan(findQuery, countQuery, pageQuery, null);
+            }
+        }
+
+        return plan;
+    }
+
+    /**
+     * Gets the current count generation, which changes whenever the cached counts are invalidated.
+     * This should be obtained before executing a count query and passed to {@link #putCachedCount}.
+     *
+     * @return the count generation.
+     */
+    public long getCountGeneration() {
+        return countGeneration.get();
+    }
+
+    /**
+     * Gets a cached count.
+     *
+     * @param key the count key, see {@link EntityQuery#getCountKey}.
+     * @return the count, or null if not cached or expired.
+     */
+    public Long getCachedCount(String key) {
+
+        CachedCount cachedCount = cachedCounts.get(key);
+
+        if (cachedCount == null)
+            return null;
+
+        if (cachedCount.expiry < System.currentTimeMillis()) {
+            cachedCounts.remove(key, cachedCount);
+            return null;
+        }
+
+        return cachedCount.count;
+    }
+
+    /**
+     * Caches a count, unless the cached counts have been invalidated since the count was obtained.
+     *
+     * @param key the count key, see {@link EntityQuery#getCountKey}.
+     * @param count the count.
+     * @param generation the count generation obtained before executing the count query.
+     */
+    public void putCachedCount(String key, long count, long generation) {
+
+        int ttl = BusinessEntity.entityConfig.getCountCacheTtl();
+
+        if (ttl <= 0 || generation != countGeneration.get())
+            return;
+
+        if (cachedCounts.size() >= MAX_CACHED_COUNTS)
+            cachedCounts.clear();
+
+        cachedCounts.put(key, new CachedCount(count, System.currentTimeMillis() + ttl * 1000L));
+    }
+
+    /**
+     * Invalidates the cached counts.
+     * If called within a transaction then the counts are invalidated again when it completes, so that any
+     * counts obtained before the changes are committed are not retained.
+     */
+    public void invalidateCounts() {
+
+        clearCachedCounts();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    clearCachedCounts();
+                }
+            });
+        }
+    }
+
+    private void clearCachedCounts() {
+
+        countGeneration.incrementAndGet();
+        cachedCounts.clear();
+    }
+
+    /**
+     * Invalidates the cached counts for an entity class.
+     *
+     * @param entityClass the entity class.
+     */
+    public static void invalidateCounts(Class<?> entityClass) {
+
+        EntityMetadata metadata = registry.get(entityClass);
+
+        if (metadata != null)
+            metadata.invalidateCounts();
+    }
+
+    /**
+     * Invalidates the cached counts for all entity classes.
+     */
+    public static void invalidateAllCounts() {
+
+        for (EntityMetadata metadata : registry.values()) {
+            metadata.invalidateCounts();
+        }
+    }
+
+    private static class CachedCount {
+
+        final private long count;
+        final private long expiry;
+
+        CachedCount(long count, long expiry) {
+            this.count = count;
+            this.expiry = expiry;
+        }
+    }
+
+    /**
+     * A QueryPlan holds the parameterised find and count queries for a particular filter and sort shape.
+     * A cached plan registers its queries as named queries on first use, so that subsequent requests reuse
+     * the prepared queries rather than parsing the query strings again.
+     * <p>
+     * The plan may also hold a page query, which returns each entity of the page along with the total count
+     * of matching entities so that both are obtained in a single database round trip.
+     */
+    public static class QueryPlan {
+
+        final private String findQueryString;
+        final private String countQueryString;
+        final private String pageQueryString;
+        final private String queryName;
+
+        private volatile boolean findQueryRegistered;
+        private volatile boolean countQueryRegistered;
+        private volatile boolean pageQueryRegistered;
+
+        QueryPlan(String findQueryString, String countQueryString, String pageQueryString, String queryName) {
+
+            this.findQueryString = findQueryString;
+            this.countQueryString = countQueryString;
+            this.pageQueryString = pageQueryString;
+            this.queryName = queryName;
+        }
+
+        public String getFindQueryString() {
+            return findQueryString;
+        }
+
+        public String getCountQueryString() {
+            return countQueryString;
+        }
+
+        public String getPageQueryString() {
+            return pageQueryString;
+        }
+
+        /**
+         * Creates the find query.
+         *
+         * @param <T> the type of the associated entity.
+         * @param em the entity manager.
+         * @param entityClass the entity class.
+         * @return the typed query, without any parameters set.
+         */
+        public <T> TypedQuery<T> createFindQuery(EntityManager em, Class<T> entityClass) {
+
+            if (queryName != null && !findQueryRegistered)
+                findQueryRegistered = registerQuery(em, queryName + ".find", em.createQuery(findQueryString, entityClass));
+
+            if (findQueryRegistered)
+                return em.createNamedQuery(queryName + ".find", entityClass);
+
+            return em.createQuery(findQueryString, entityClass);
+        }
+
+        /**
+         * Creates the count query.
+         *
+         * @param em the entity manager.
+         * @return the typed query, without any parameters set.
+         */
+        public TypedQuery<Long> createCountQuery(EntityManager em) {
+
+            if (queryName != null && !countQueryRegistered)
+                countQueryRegistered = registerQuery(em, queryName + ".count", em.createQuery(countQueryString, Long.class));
+
+            if (countQueryRegistered)
+                return em.createNamedQuery(queryName + ".count", Long.class);
+
+            return em.createQuery(countQueryString, Long.class);
+        }
+
+        /**
+         * Creates the page query, where each result is an array of the entity and the total count.
+         *
+         * @param em the entity manager.
+         * @return the typed query, without any parameters set.
+         */
+        public TypedQuery<Object[]> createPageQuery(EntityManager em) {
+
+            if (queryName != null && !pageQueryRegistered)
+                pageQueryRegistered = registerQuery(em, queryName + ".page", em.createQuery(pageQueryString, Object[].class));
+
+            if (pageQueryRegistered)
+                return em.createNamedQuery(queryName + ".page", Object[].class);
+
+            return em.createQuery(pageQueryString, Object[].class);
+        }
+
+        private static boolean registerQuery(EntityManager em, String name, TypedQuery<?> query) {
+
+            try {
+                em.getEntityManagerFactory().addNamedQuery(name, query);
+                return true;
+            } catch (RuntimeException ex) {
+                logger.warn("registerQuery, unable to register named query " + name + ", " + ex.getMessage());
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.midrig.baff.app.entity;
+
+import java.util.Collections;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+/**
+ * An EntityQuery represents a filtered and sorted search for business entities.
+ * It combines a cached {@link EntityMetadata.QueryPlan} with the parameter values for a particular request,
+ * and should be obtained via {@link BusinessEntity#createQuery}.
+ */
+public class EntityQuery {
+
+    final private EntityMetadata.QueryPlan plan;
+    final private List<Object> parameters;
+    final private int countParameters;
+
+    /**
+     * EntityQuery should be obtained via {@link BusinessEntity#createQuery}.
+     */
+    EntityQuery(EntityMetadata.QueryPlan plan, List<Object> parameters) {
+
+        this(plan, parameters, parameters.size());
+    }
+
+    /**
+     * EntityQuery should be obtained via {@link BusinessEntity#createQuery}.
+     * The count query only uses the leading parameters, as it does not include any seek predicate.
+     */
+    EntityQuery(EntityMetadata.QueryPlan plan, List<Object> parameters, int countParameters) {
+
+        this.plan = plan;
+        this.parameters = Collections.unmodifiableList(parameters);
+        this.countParameters = countParameters;
+    }
+
+    /**
+     * Gets the query plan.
+     *
+     * @return {@link #plan}.
+     */
+    public EntityMetadata.QueryPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Gets the positional parameter values, where the first value is bound to parameter 1.
+     *
+     * @return {@link #parameters}.
+     */
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Gets a key that identifies the count query and its parameter values, for caching the count.
+     *
+     * @return the count key.
+     */
+    public String getCountKey() {
+        return plan.getCountQueryString() + "#" + parameters.subList(0, countParameters);
+    }
+
+    /**
+     * Creates the find query with its parameters bound.
+     *
+     * @param <T> the type of the associated entity.
+     * @param em the entity manager.
+     * @param entityClass the entity class.
+     * @return the typed query.
+     */
+    public <T> TypedQuery<T> createFindQuery(EntityManager em, Class<T> entityClass) {
+
+        return bindParameters(plan.createFindQuery(em, entityClass), parameters.size());
+    }
+
+    /**
+     * Creates the count query with its parameters bound.
+     *
+     * @param em the entity manager.
+     * @return the typed query.
+     */
+    public TypedQuery<Long> createCountQuery(EntityManager em) {
+
+        return bindParameters(plan.createCountQuery(em), countParameters);
+    }
+
+    /**
+     * Creates the page query with its parameters bound, which returns each entity along with the
+     * total count.
+     *
+     * @param em the entity manager.
+     * @return the typed query.
+     */
+    public TypedQuery<Object[]> createPageQuery(EntityManager em) {
+
+        return bindParameters(plan.createPageQuery(em), parameters.size());
+    }
+
+    private <T> TypedQuery<T> bindParameters(TypedQuery<T> query, int count) {
+
+        for (int i=0; i<count; i++) {
+            query.setParameter(i+1, parameters.get(i));
+        }
+
+        return query;
+    }
+
+}
@@ -0,0 +1,220 @@
+package com.midrig.baff.app.entity;
+
+import com.midrig.baff.app.service.ServiceResponseException;
+import com.midrig.baff.app.service.ServiceResponseFactory;
+import com.midrig.baff.app.service.ValidationError;
+import com.midrig.baff.app.service.ValidationErrorFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A QueryPredicate is a node in a typed predicate tree compiled from the filters of a request.
+ * Each predicate appends itself to a WHERE clause, adding its values to a list of positional parameters,
+ * so that the query string depends only on the shape of the filters and never on their values.
+ * <p>
+ * Filters are compiled via {@link #compile} using the following conventions:
+ * <ul>
+ * <li>A value enclosed in square brackets has the brackets removed, e.g. "[1|2]"
+ * <li>A value starting or ending with "%" is matched case insensitively with LIKE
+ * <li>A value containing "|" is matched against each of the pipe delimited values with IN
+ * <li>Any other value is matched with =
+ * </ul>
+ * Values are converted to the type of the associated field via {@link EntityMetadata#toQueryValue}.
+ */
+public abstract class QueryPredicate {
+
+    final private static Logger logger = LoggerFactory.getLogger(QueryPredicate.class);
+
+    /**
+     * Appends this predicate to a query string for the entity alias "e", adding any values to the parameters.
+     *
+     * @param query the query string to append to.
+     * @param parameters the list of parameter values to add to.
+     */
+    public void appendTo(StringBuilder query, List<Object> parameters) {
+        appendTo(query, "e", parameters);
+    }
+
+    /**
+     * Appends this predicate to a query string, adding any values to the parameters.
+     * The values are always added in the same order, so a predicate appended for different aliases refers to 
+     * the same parameter positions if appended to an equivalent list.
+     *
+     * @param query the query string to append to.
+     * @param alias the alias of the entity in the query.
+     * @param parameters the list of parameter values to add to.
+     */
+    public abstract void appendTo(StringBuilder query, String alias, List<Object> parameters);
+
+    /**
+     * Compiles a map of filters into a predicate.
+     * Null values are ignored, whereas a filter on a property that is not a field of the entity is rejected 
+     * with a {@link ServiceResponseException} containing a validation error for the property, whose message 
+     * is the key "query.filter.unknown".
+     *
+     * @param metadata the metadata of the entity being filtered.
+     * @param filters the filter values by property path.
+     * @return the predicate, or null if there are no filters to apply.
+     */
+    public static QueryPredicate compile(EntityMetadata metadata, Map<String, String> filters) {
+
+        if (filters == null || filters.isEmpty())
+            return null;
+
+        List<QueryPredicate> predicates = new ArrayList<>();
+
+        for (Map.Entry<String, String> filter : filters.entrySet()) {
+
+            String path = filter.getKey();
+            String value = filter.getValue();
+
+            if (value == null)
+                continue;
+
+            if (!metadata.hasField(path)) {
+                logger.warn("compile, rejecting unknown filter property {} for {}", path, metadata.getEntityName());
+                
+                List<ValidationError> errors = new ArrayList<>();
+                errors.add(ValidationErrorFactory.getFieldError("query.filter.unknown", path, path));
+                throw new ServiceResponseException(ServiceResponseFactory.getValidationFailResponse(errors));
+            }
+
+            if (value.startsWith("[") && value.endsWith("]"))
+                value = value.substring(1, value.length()-1);
+
+            if (value.startsWith("%") || value.endsWith("%")) {
+
+                predicates.add(new Like(path, value.toUpperCase()));
+
+            } else if (value.contains("|")) {
+
+                List<Object> values = new ArrayList<>();
+
+                for (String item : value.split("\\|", -1)) {
+                    values.add(metadata.toQueryValue(path, item));
+                }
+
+                predicates.add(new In(path, values));
+
+            } else {
+
+                predicates.add(new Equal(path, metadata.toQueryValue(path, value)));
+            }
+        }
+
+        if (predicates.isEmpty())
+            return null;
+
+        if (predicates.size() == 1)
+            return predicates.get(0);
+
+        return new And(predicates);
+    }
+
+    /**
+     * Appends a value to the parameters.
+     *
+     * @param query the query string to append the parameter reference to.
+     * @param parameters the list of parameter values.
+     * @param value the value.
+     */
+    protected static void appendParameter(StringBuilder query, List<Object> parameters, Object value) {
+
+        parameters.add(value);
+        query.append('?').append(parameters.size());
+    }
+
+    /**
+     * Matches a property path to a single value.
+     */
+    public static class Equal extends QueryPredicate {
+
+        final private String path;
+        final private Object value;
+
+        public Equal(String path, Object value) {
+            this.path = path;
+            this.value = value;
+        }
+
+        @Override
+        public void appendTo(StringBuilder query, String alias, List<Object> parameters) {
+
+            query.append(alias).append('.').append(path).append(" = ");
+            appendParameter(query, parameters, value);
+        }
+    }
+
+    /**
+     * Matches a property path to any of a list of values, bound as a single collection parameter.
+     */
+    public static class In extends QueryPredicate {
+
+        final private String path;
+        final private List<Object> values;
+
+        public In(String path, List<Object> values) {
+            this.path = path;
+            this.values = Collections.unmodifiableList(values);
+        }
+
+        @Override
+        public void appendTo(StringBuilder query, String alias, List<Object> parameters) {
+
+            query.append(alias).append('.').append(path).append(" IN ");
+            appendParameter(query, parameters, values);
+        }
+    }
+
+    /**
+     * Matches a property path case insensitively to a pattern, which should be upper case.
+     */
+    public static class Like extends QueryPredicate {
+
+        final private String path;
+        final private String pattern;
+
+        public Like(String path, String pattern) {
+            this.path = path;
+            this.pattern = pattern;
+        }
+
+        @Override
+        public void appendTo(StringBuilder query, String alias, List<Object> parameters) {
+
+            query.append("UPPER(").append(alias).append('.').append(path).append(") LIKE ");
+            appendParameter(query, parameters, pattern);
+        }
+    }
+
+    /**
+     * Matches all of a list of predicates.
+     */
+    public static class And extends QueryPredicate {
+
+        final private List<QueryPredicate> predicates;
+
+        public And(List<QueryPredicate> predicates) {
+            this.predicates = Collections.unmodifiableList(predicates);
+        }
+
+        @Override
+        public void appendTo(StringBuilder query, String alias, List<Object> parameters) {
+
+            boolean first = true;
+
+            for (QueryPredicate predicate : predicates) {
+
+                if (!first)
+                    query.append(" AND ");
+
+                predicate.appendTo(query, alias, parameters);
+                first = false;
+            }
+        }
+    }
+}
@@ -3,7 +3,10 @@
 package com.midrig.baff.app.entity;
 
 import com.midrig.baff.app.json.JsonItem;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import javax.json.Json;
 import javax.json.JsonArrayBuilder;
@@ -53,6 +56,17 @@ public class TreeNode<T extends BusinessEntity> extends JsonItem {
      */
     protected final boolean canAddChild;
     
+    /**
+     * Optionally set to count the children of the entities, so that leaf nodes can be determined without
+     * loading the children.
+     */
+    protected ChildCounter childCounter;
+    
+    /**
+     * The child counts returned by the {@link #childCounter}, by entity identifier.
+     */
+    private Map<Object, Long> childCounts;
+    
     /**
      * A NodeId class defines the node identifier comprising node type, entity type and entity id.
      */
@@ -70,6 +84,21 @@ public class TreeNode<T extends BusinessEntity> extends JsonItem {
         }
         
     }     
+    
+    /**
+     * A ChildCounter counts the children of the entities represented by a set of nodes, typically via a single
+     * count query grouped by parent, so that the children need not be loaded to determine if a node is leaf.
+     */
+    public interface ChildCounter {
+        
+        /**
+         * Counts the children of a list of entities
+         * @param entityIds The identifiers of the entities
+         * @return the number of children by entity identifier; entities without children may be omitted
+         */
+        Map<Object, Long> countChildren(List<Object> entityIds);
+        
+    }
 
     /**
      * TreeNode constructor
@@ -169,6 +198,49 @@ public class TreeNode<T extends BusinessEntity> extends JsonItem {
         
     }
     
+    /**
+     * Sets the child counter used to determine the number of children of each entity
+     * @param childCounter The child counter
+     */
+    public void setChildCounter(ChildCounter childCounter) {
+        
+        this.childCounter = childCounter;
+        this.childCounts = null;
+        
+    }
+    
+    /**
+     * Gets the number of children of an entity via the {@link #childCounter}.
+     * The children of all the entities are counted on the first call.
+     * @param entity
+     * @return the number of children, or null if there is no child counter or the entity is new
+     */
+    protected Long getChildCount(T entity) {
+        
+        if (childCounter == null || entity.getEntityId() == null)
+            return null;
+        
+        if (childCounts == null) {
+            
+            List<Object> entityIds = new ArrayList<>();
+            
+            for (T listEntity : entityList) {
+                if (listEntity.getEntityId() != null)
+                    entityIds.add(listEntity.getEntityId());
+            }
+            
+            if (entityIds.isEmpty())
+                childCounts = Collections.emptyMap();
+            else
+                childCounts = childCounter.countChildren(entityIds);
+        }
+        
+        Long count = childCounts.get(entity.getEntityId());
+        
+        return count == null ? 0L : count;
+        
+    }
+    
     /**
      * Converts this object to a JsonObject
      * @return the JsonObject
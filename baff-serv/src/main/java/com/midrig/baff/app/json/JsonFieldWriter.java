@@ -0,0 +1,170 @@
+
+package com.midrig.baff.app.json;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import javax.json.JsonObjectBuilder;
+import javax.json.stream.JsonGenerator;
+
+/**
+ * A JsonFieldWriter adds the properties of an object either to a Json object builder or to a Json generator.
+ * It allows an entity to list its properties once, via the typed write methods, and then be both converted
+ * to a Json object and streamed with the same result, see {@link #forBuilder} and {@link #forGenerator}.
+ * Values are written as by the addJsonElement and writeJsonElement methods of {@link JsonItem}.
+ *
+ */
+public abstract class JsonFieldWriter {
+
+    /**
+     * Creates a writer that adds the properties to a Json object builder.
+     *
+     * @param builder the Json object builder to add the properties to.
+     * @return the writer.
+     */
+    public static JsonFieldWriter forBuilder(JsonObjectBuilder builder) {
+        return new BuilderWriter(builder);
+    }
+
+    /**
+     * Creates a writer that writes the properties to a Json generator, within an object.
+     *
+     * @param generator the Json generator to write the properties to.
+     * @return the writer.
+     */
+    public static JsonFieldWriter forGenerator(JsonGenerator generator) {
+        return new GeneratorWriter(generator);
+    }
+
+    /**
+     * Writes a null value for the given property name.
+     *
+     * @param name the property name.
+     */
+    public abstract void writeNull(String name);
+
+    public abstract void write(String name, String value);
+
+    public abstract void write(String name, Integer value);
+
+    public abstract void write(String name, Long value);
+
+    public abstract void write(String name, Short value);
+
+    public abstract void write(String name, Boolean value);
+
+    public abstract void write(String name, Timestamp value);
+
+    public abstract void write(String name, Date value);
+
+    public abstract void write(String name, byte[] value);
+
+
+    private static class BuilderWriter extends JsonFieldWriter {
+
+        final private JsonObjectBuilder builder;
+
+        BuilderWriter(JsonObjectBuilder builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        public void writeNull(String name) {
+            JsonItem.addJsonNull(builder, name);
+        }
+
+        @Override
+        public void write(String name, String value) {
+            JsonItem.addJsonElement(builder, name, value);
+        }
+
+        @Override
+        public void write(String name, Integer value) {
+            JsonItem.addJsonElement(builder, name, value);
+        }
+
+        @Override
+        public void write(String name, Long value) {
+            JsonItem.addJsonElement(builder, name, value);
+        }
+
+        @Override
+        public void write(String name, Short value) {
+            JsonItem.addJsonElement(builder, name, value);
+        }
+
+        @Override
+        public void write(String name, Boolean value) {
+            JsonItem.addJsonElement(builder, name, value);
+        }
+
+        @Override
+        public void write(String name, Timestamp value) {
+            JsonItem.addJsonElement(builder, name, value);
+        }
+
+        @Override
+        public void write(String name, Date value) {
+            JsonItem.addJsonElement(builder, name, value);
+        }
+
+        @Override
+        public void write(String name, byte[] value) {
+            JsonItem.addJsonElement(builder, name, value);
+        }
+    }
+
+    private static class GeneratorWriter extends JsonFieldWriter {
+
+        final private JsonGenerator generator;
+
+        GeneratorWriter(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        @Override
+        public void writeNull(String name) {
+            JsonItem.writeJsonNull(generator, name);
+        }
+
+        @Override
+        public void write(String name, String value) {
+            JsonItem.writeJsonElement(generator, name, value);
+        }
+
+        @Override
+        public void write(String name, Integer value) {
+            JsonItem.writeJsonElement(generator, name, value);
+        }
+
+        @Override
+        public void write(String name, Long value) {
+            JsonItem.writeJsonElement(generator, name, value);
+        }
+
+        @Override
+        public void write(String name, Short value) {
+            JsonItem.writeJsonElement(generator, name, value);
+        }
+
+        @Override
+        public void write(String name, Boolean value) {
+            JsonItem.writeJsonElement(generator, name, value);
+        }
+
+        @Override
+        public void write(String name, Timestamp value) {
+            JsonItem.writeJsonElement(generator, name, value);
+        }
+
+        @Override
+        public void write(String name, Date value) {
+            JsonItem.writeJsonElement(generator, name, value);
+        }
+
+        @Override
+        public void write(String name, byte[] value) {
+            JsonItem.writeJsonElement(generator, name, value);
+        }
+    }
+
+}
@@ -5,12 +5,14 @@ import java.io.StringWriter;
 import java.sql.Timestamp;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import javax.json.Json;
 import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonValue;
 import javax.json.JsonWriter;
+import javax.json.stream.JsonGenerator;
 import static javax.management.Query.value;
 import javax.xml.bind.DatatypeConverter;
 
@@ -19,6 +21,9 @@ import javax.xml.bind.DatatypeConverter;
  * A JsonItem provides an abstract {@link @toJson} method that subclasses must implement to 
  * convert themselves to a Json object, along with addJsonElement methods to support conversion of
  * different types of properties.
+ * <p>
+ * A JsonItem can also be written directly to a {@link JsonGenerator} via {@link #writeJson}, with
+ * writeJsonElement methods to support streaming of different types of properties.
  * 
  */  
 public abstract class JsonItem{
@@ -196,6 +201,196 @@ public abstract class JsonItem{
         }
     }
     
+    /**
+     * Writes this item as a Json object to the generator within an array or root context.
+     * Override to stream the item without first building a Json object.
+     * 
+     * @param generator the Json generator to write to.
+     */   
+    public void writeJson(JsonGenerator generator) {
+        writeJsonObject(generator, toJson());
+    }
+    
+    /**
+     * Writes this item as a Json object to the generator for the given property name.
+     * Override to stream the item without first building a Json object.
+     * 
+     * @param generator the Json generator to write to.
+     * @param name the property name.
+     */   
+    public void writeJson(JsonGenerator generator, String name) {
+        writeJsonObject(generator, name, toJson());
+    }
+    
+    /**
+     * Writes a Json object to the generator within an array or root context.
+     * 
+     * @param generator the Json generator to write to.
+     * @param object the Json object, which may be null.
+     */   
+    public static void writeJsonObject(JsonGenerator generator, JsonObject object) {
+        
+        if (object == null) {
+            generator.writeNull();
+            return;
+        }
+        
+        generator.writeStartObject();
+        
+        for (Map.Entry<String, JsonValue> entry : object.entrySet()) {
+            generator.write(entry.getKey(), entry.getValue());
+        }
+        
+        generator.writeEnd();
+    }
+    
+    /**
+     * Writes a Json object to the generator for the given property name.
+     * 
+     * @param generator the Json generator to write to.
+     * @param name the property name.
+     * @param object the Json object, which may be null.
+     */   
+    public static void writeJsonObject(JsonGenerator generator, String name, JsonObject object) {
+        
+        if (object == null) {
+            generator.writeNull(name);
+            return;
+        }
+        
+        generator.write(name, object);
+    }
+    
+    /**
+     * Writes a null value to the generator for the given property name.
+     * 
+     * @param generator the Json generator to write to.
+     * @param name the property name.
+     */   
+    public static void writeJsonNull(JsonGenerator generator, String name) {
+        generator.writeNull(name);
+    }
+    
+    /**
+     * Writes a String value to the generator for the given property name.
+     * 
+     * @param generator the Json generator to write to.
+     * @param name the property name.
+     * @param value the property value.
+     */   
+    public static void writeJsonElement(JsonGenerator generator, String name, String value) {
+        if (value == null) {
+            generator.writeNull(name);
+        } else {
+            generator.write(name, value);
+        }
+    }
+    
+    /**
+     * Writes an Integer value to the generator for the given property name.
+     * 
+     * @param generator the Json generator to write to.
+     * @param name the property name.
+     * @param value the property value.
+     */   
+    public static void writeJsonElement(JsonGenerator generator, String name, Integer value) {
+        if (value == null) {
+            generator.writeNull(name);
+        } else {
+            generator.write(name, value.intValue());
+        }
+    }
+    
+    /**
+     * Writes a Long value to the generator for the given property name.
+     * 
+     * @param generator the Json generator to write to.
+     * @param name the property name.
+     * @param value the property value.
+     */   
+    public static void writeJsonElement(JsonGenerator generator, String name, Long value) {
+        if (value == null) {
+            generator.writeNull(name);
+        } else {
+            generator.write(name, value.longValue());
+        }
+    }
+    
+    /**
+     * Writes a Short value to the generator for the given property name.
+     * 
+     * @param generator the Json generator to write to.
+     * @param name the property name.
+     * @param value the property value.
+     */   
+    public static void writeJsonElement(JsonGenerator generator, String name, Short value) {
+        if (value == null) {
+            generator.writeNull(name);
+        } else {
+            generator.write(name, value.intValue());
+        }
+    }
+    
+    /**
+     * Writes a Boolean value to the generator for the given property name.
+     * 
+     * @param generator the Json generator to write to.
+     * @param name the property name.
+     * @param value the property value.
+     */   
+    public static void writeJsonElement(JsonGenerator generator, String name, Boolean value) {
+        if (value == null) {
+            generator.writeNull(name);
+        } else {
+            generator.write(name, value.booleanValue());
+        }
+    }
+    
+    /**
+     * Writes a Timestamp value to the generator for the given property name.
+     * 
+     * @param generator the Json generator to write to.
+     * @param name the property name.
+     * @param value the property value.
+     */   
+    public static void writeJsonElement(JsonGenerator generator, String name, Timestamp value) {
+        if (value == null) {
+            generator.writeNull(name);
+        } else {
+            generator.write(name, value.toString());
+        }
+    }
+    
+    /**
+     * Writes a Date value to the generator for the given property name.
+     * 
+     * @param generator the Json generator to write to.
+     * @param name the property name.
+     * @param value the property value.
+     */   
+    public static void writeJsonElement(JsonGenerator generator, String name, Date value) {
+        if (value == null) {
+            generator.writeNull(name);
+        } else {
+            generator.write(name, value.toString());
+        }
+    }
+    
+    /**
+     * Writes a binary value to the generator for the given property name.
+     * 
+     * @param generator the Json generator to write to.
+     * @param name the property name.
+     * @param value the property value.
+     */   
+    public static void writeJsonElement(JsonGenerator generator, String name, byte[] value) {
+        if (value == null || value.length == 0) {
+            generator.writeNull(name);
+        } else {
+            generator.write(name, DatatypeConverter.printBase64Binary(value));
+        }
+    }
+    
     /**
      * Converts a Json object to a Json encoded string.
      * 
@@ -2,6 +2,8 @@ package com.midrig.baff.app.service;
 
 import com.midrig.baff.app.entity.MappedBusinessEntity;
 import com.midrig.baff.app.entity.BusinessEntity;
+import com.midrig.baff.app.entity.EntityMetadata;
+import com.midrig.baff.app.entity.EntityQuery;
 import com.midrig.baff.app.service.ServiceRequest.PageInfo;
 import com.midrig.baff.utility.locale.MessageHelper;
 import com.midrig.baff.utility.refdata.RefDataCache;
@@ -9,15 +11,18 @@ import com.midrig.baff.utility.usersecurity.UserSecurityHelper;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import javax.annotation.PostConstruct;
 import javax.json.JsonObject;
 import javax.persistence.EntityManager;
 import javax.persistence.LockModeType;
 import javax.persistence.NoResultException;
+import javax.persistence.OptimisticLockException;
 import javax.persistence.PersistenceContext;
-import javax.persistence.Query;
 import javax.persistence.TypedQuery;
+import javax.persistence.metamodel.EntityType;
 import javax.validation.ConstraintViolation;
 import javax.validation.Validator;
 import org.slf4j.Logger;
@@ -25,6 +30,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.orm.jpa.JpaOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * A BusinessService encapsulates operations on business entities that are performed as
@@ -70,6 +77,35 @@ public abstract class BusinessService {
     @Autowired 
     protected UserSecurityHelper userSecurityHelper;
     
+    /**
+     * The unit of work for the operation in progress on the current thread.
+     * It is released when the outermost save or remove operation ends, or when the transaction completes,
+     * so that it cannot be carried over to another request on the same thread.
+     */
+    final private ThreadLocal<UnitOfWork> unitOfWork = new ThreadLocal<>();
+    
+    /**
+     * Registers the metadata for each business entity managed by the entity manager.
+     * This builds the metadata required for query generation at startup rather than on first use.
+     */
+    @PostConstruct
+    protected void registerEntityMetadata() {
+        
+        try {
+            
+            for (EntityType<?> entityType : em.getMetamodel().getEntities()) {
+                
+                Class<?> javaType = entityType.getJavaType();
+                
+                if (BusinessEntity.class.isAssignableFrom(javaType))
+                    EntityMetadata.register(javaType.asSubclass(BusinessEntity.class));
+            }
+            
+        } catch (RuntimeException ex) {
+            logger.warn("registerEntityMetadata, metadata will be built on first use, " + ex.getMessage());
+        }
+    }
+    
     /**
      * Override to process a list of retrieved entities found via {@link #findPageOfEntities}.
      * 
@@ -113,7 +149,8 @@ public abstract class BusinessService {
     
     /**
      * Performs business operations post validation and prior to completing any database transaction.
-     * Override if required.
+     * Override if required.  For a save, the entity retains the baseline of the revised entity, so that the 
+     * previous value of a field can be obtained via {@link BusinessEntity#getBaselineValue}.
      * 
      * @param request the input service request.
      * @param action the type of action, {@link #REC_SAVE} or {@link #REC_REMOVE}.
@@ -164,7 +201,15 @@ public abstract class BusinessService {
     /**
      * Retrieves a subset of entities from the database based on query criteria and paging information.
      * Obtains paging information, including filter and sort criteria, from {@link ServiceRequest#getPageInfo}.
-     * Obtains the query strings from {@link BusinessEntity#createFindQueryString}.
+     * Obtains the query from {@link BusinessEntity#createQuery}, translating the messages of any validation errors 
+     * raised for invalid filter or seek criteria.
+     * If keyset pagination is requested via {@link PageInfo#isKeyset} then the page is found by seeking 
+     * past the last seen sort values rather than skipping to the start position.
+     * <p>
+     * The total count is obtained via {@link #countEntities}, unless {@link PageInfo#skipCount} is set in which case 
+     * the total is -1 if there are more entities following the page, or otherwise the number of entities up to 
+     * the end of the page.  If {@link BusinessEntity#isPagedWithTotal} is set then the page and total count are
+     * instead obtained together via {@link #findPageWithTotal}.
      * 
      * @param <T> the type of the associated entity.
      * @param <ID> the type of the associated entity's identifier.
@@ -178,32 +223,128 @@ public abstract class BusinessService {
         Class entityClass = newEntity.getClass();
         PageInfo pageInfo = request.getPageInfo();
         
-        // Get the query strings for the entity
-        HashMap<String, String> queryStrings = newEntity.createQueryStrings(pageInfo.sorters, pageInfo.filters);
+        // Get the query for the entity
+        EntityQuery query;
+        
+        try {
+            query = newEntity.createQuery(pageInfo.sorters, pageInfo.filters, pageInfo.seek);
         
-        String findQueryString = queryStrings.get("FIND");
-        String countQueryString = queryStrings.get("COUNT");
+        } catch (ServiceResponseException ex) {
+            
+            List<ValidationError> errors = ex.getResponse().getErrors();
+            
+            if (errors == null || errors.isEmpty())
+                throw ex;
+            
+            throw new ServiceResponseException(ServiceResponseFactory.getValidationFailResponse(processValidationErrors(errors)));
+        }
         
         // Create and execute the queries
-        Query countQuery = em.createQuery(countQueryString); 
-        long count = (long)countQuery.getSingleResult();
+        boolean skipCount = pageInfo.skipCount && pageInfo.limit != null;
+        
+        if (!skipCount && newEntity.isPagedWithTotal())
+            return findPageWithTotal(request, newEntity, query);
+        
+        long count = skipCount ? -1 : countEntities(newEntity, query);
         
         logger.debug("findPageOfEntities count= {}", count);
                 
-        TypedQuery<T> findQuery = em.createQuery(findQueryString, entityClass);
+        TypedQuery<T> findQuery = query.createFindQuery(em, entityClass);
         
         logger.debug("findPageOfEntities start= {}, limit= {}", pageInfo.start, pageInfo.limit);
         
-        findQuery.setFirstResult(pageInfo.start);
-        findQuery.setMaxResults(pageInfo.limit); 
+        if (!pageInfo.isKeyset())
+            findQuery.setFirstResult(pageInfo.start);
+        
+        // When skipping the count, retrieve an additional entity to determine if there are more
+        findQuery.setMaxResults(skipCount ? pageInfo.limit + 1 : pageInfo.limit); 
                     
         List<T> entities = findQuery.getResultList();
         
+        if (skipCount) {
+            
+            if (entities.size() > pageInfo.limit) {
+                entities = new ArrayList<>(entities.subList(0, pageInfo.limit));
+            } else {
+                count = entities.size() + (pageInfo.isKeyset() || pageInfo.start == null ? 0 : pageInfo.start);
+            }
+        }
+        
         // Allow the subclass to process the list
         return processRetrievedEntities(request, newEntity, entities, count);
 
     }
     
+    /**
+     * Retrieves a page of entities along with the total count in a single database round trip.
+     * The page query selects the total count of matching entities as a sub-select alongside each entity, 
+     * so only an empty page requires a separate count.
+     * 
+     * @param <T> the type of the associated entity.
+     * @param <ID> the type of the associated entity's identifier.
+     * @param request the input service request.
+     * @param newEntity a new instance of the associated entity.
+     * @param query the query.
+     * @return a response containing the list of entities found.
+     */     
+    protected <T extends MappedBusinessEntity, ID extends Serializable> ServiceResponse<T> findPageWithTotal(ServiceRequest<ID> request, T newEntity, EntityQuery query) {        
+        logger.trace("findPageWithTotal");
+        
+        PageInfo pageInfo = request.getPageInfo();
+        TypedQuery<Object[]> pageQuery = query.createPageQuery(em);
+        
+        if (!pageInfo.isKeyset())
+            pageQuery.setFirstResult(pageInfo.start);
+        
+        pageQuery.setMaxResults(pageInfo.limit);
+        
+        List<Object[]> rows = pageQuery.getResultList();
+        List<T> entities = new ArrayList<>(rows.size());
+        
+        for (Object[] row : rows) {
+            entities.add((T)row[0]);
+        }
+        
+        long count;
+        
+        if (rows.isEmpty())
+            count = countEntities(newEntity, query);
+        else
+            count = ((Number)rows.get(0)[1]).longValue();
+        
+        logger.debug("findPageWithTotal count= {}", count);
+        
+        // Allow the subclass to process the list
+        return processRetrievedEntities(request, newEntity, entities, count);
+        
+    }
+    
+    /**
+     * Counts the entities for a query, using the count cached in the {@link EntityMetadata} if available.
+     * 
+     * @param <T> the type of the associated entity.
+     * @param newEntity a new instance of the associated entity.
+     * @param query the query.
+     * @return the count of entities.
+     */
+    protected <T extends MappedBusinessEntity> long countEntities(T newEntity, EntityQuery query) {
+        
+        EntityMetadata metadata = newEntity.getMetadata();
+        String countKey = query.getCountKey();
+        
+        Long count = metadata.getCachedCount(countKey);
+        
+        if (count == null) {
+            
+            long generation = metadata.getCountGeneration();
+            
+            count = query.createCountQuery(em).getSingleResult();
+            metadata.putCachedCount(countKey, count, generation);
+        }
+        
+        return count;
+    }
+    
      /**
      * Saves a new or updated entity to the database.
      * Performs the following actions:
@@ -225,24 +366,32 @@ public abstract class BusinessService {
     protected <T extends MappedBusinessEntity, ID extends Serializable> ServiceResponse<T> saveEntity(JpaRepository<T, ID> entityDao, ServiceRequest<ID> request, Validator validator, T newEntity) {       
         logger.trace("saveEntity");
         
-        // Setup the entity to be saved
-        T revEntity = prepareForSave(entityDao, request, newEntity);
+        UnitOfWork outer = unitOfWork.get();
+        
+        try {
+        
+            // Setup the entity to be saved
+            T revEntity = prepareForSave(entityDao, request, newEntity);
         
-        // Check the entity version
-        verifyCurrentVersion(revEntity);
+            // Check the entity version, only updating the master version if the entity has changed
+            verifyCurrentVersion(revEntity, null, revEntity.isDirty());
              
-        // Do  validation (throws exceptions)
-        validateSave(request, validator, revEntity);
+            // Do  validation (throws exceptions)
+            validateSave(request, validator, revEntity);
         
-        // Save the new entity
-        T storedEntity = executeSave(entityDao, revEntity);
+            // Save the new entity, unless this is an update that changes nothing
+            T storedEntity = revEntity.isDirty() ? executeSave(entityDao, revEntity) : skipSave(revEntity);
         
-        // Do further business operations
-        String message = doBusinessOperations(request, MappedBusinessEntity.REC_SAVE, storedEntity);
+            // Do further business operations
+            String message = doBusinessOperations(request, MappedBusinessEntity.REC_SAVE, storedEntity);
              
-        // Store the updated entity
-        return ServiceResponseFactory.getSuccessResponse(storedEntity, storedEntity.getMasterEntity(), message);
-
+            // Store the updated entity
+            return ServiceResponseFactory.getSuccessResponse(storedEntity, storedEntity.getMasterEntity(), message);
+        
+        } finally {
+            releaseUnitOfWork(outer);
+        }
+    
     }
     
     /**
@@ -250,7 +399,7 @@ public abstract class BusinessService {
      * Retrieves the existing entity from the database (if updating).  The process for setting up the revised entity
      * is as follows:
      *    1. Create a new entity
-     *    2. Copy the contents of any existing entity into the new entity
+     *    2. Copy the contents of any existing entity into the new entity and set this as the baseline
      *    3. Copy the request data into the entity; the entity should typically be setup to overwrite all key or
      *        mandatory fields, but only overwrite optional fields if the provided data is not null
      *    4. If this is a new entity then retrieve the master and set it for a dummy "existing" entity
@@ -287,10 +436,13 @@ public abstract class BusinessService {
                 }
                 
                 // Ensure the revised entity reflects the current entity before copying in new values        
-                revEntity.setBaseline();
                 revEntity.copyFrom(curEntity);
+                revEntity.setBaseline();
                 revEntity.setFromJson(jsonEntity);
                 revEntity.setBlobs(blobs);
+                
+                if (logger.isDebugEnabled())
+                    logger.debug("prepareForSave: changed fields " + revEntity.getDirtyFieldNames());
 
             } else {
 
@@ -339,8 +491,15 @@ public abstract class BusinessService {
         try {
     
             // Always flush to ensure subsequent reads are correct
+            // This also applies any version updates pending in the unit of work
             storedEntity = entityDao.saveAndFlush(revEntity);
-            em.flush();
+            storedEntity.copyBaseline(revEntity);
+            
+            UnitOfWork work = getUnitOfWork();
+            work.setFlushed();
+            
+            // Any cached counts for this type of entity may now be incorrect
+            EntityMetadata.invalidateCounts(revEntity.getClass());
     
             // Refresh the entity from the database to ensure it's current as the entity saved
             // and returned from the save is just a reference (so any domain object related fields
@@ -348,8 +507,10 @@ public abstract class BusinessService {
             // This updates the version control settings
             // This also removes the reference entity, which is no longer relevant
             if (storedEntity.isIsAutoRefreshed())
-                em.refresh(storedEntity);
+                work.registerRefresh(storedEntity);
             
+            // Re-read the saved entity along with any masters whose version has been updated
+            completeUnitOfWork();
             
             // Ensure the version and master are populated
             storedEntity.setMasterAndVersion();
@@ -368,6 +529,170 @@ public abstract class BusinessService {
         
     }
     
+    /**
+     * Skips the save operation for an existing entity that has not changed.
+     * Returns the current entity, with the master and version set, as if it had been saved.
+     * 
+     * @param <T> the type of the associated entity.
+     * @param revEntity the revised entity, which references the current entity.
+     * @return the current entity.
+     */     
+    protected <T extends MappedBusinessEntity> T skipSave(T revEntity) {       
+        logger.trace("skipSave");
+        
+        T curEntity = (T) revEntity.getReferenceEntity();
+        curEntity.copyBaseline(revEntity);
+        
+        // The master version has been verified but not updated, as nothing has changed
+        completeUnitOfWork();
+        
+        curEntity.setMasterAndVersion();
+        
+        return curEntity;
+        
+    }
+    
+    /**
+     * Saves a batch of entities to the database within a single operation.
+     * Each item of the batch request is a save request, and is processed as for {@link #saveEntity} 
+     * except that:
+     * <ul>
+     * <li>The version of each distinct master is updated only once.
+     * <li>All entities are validated before any are saved; if any fail then the validation errors for 
+     * all items are returned, with the field of each error prefixed by the index of the item, e.g. "2.score".
+     * <li>The entities are written with a single flush, so that the persistence provider can batch the
+     * inserts and updates.
+     * </ul>
+     * 
+     * @param <T> the type of the associated entity.
+     * @param <ID> the type of the associated entity's identifier.
+     * @param entityDao the associated entity's data access object.
+     * @param request the input batch request.
+     * @param validator the associated entity's validator.
+     * @param newEntity a new instance of the associated entity.
+     * @return a response containing the persisted entities in the order of the items.
+     */     
+    protected <T extends MappedBusinessEntity, ID extends Serializable> ServiceResponse<T> saveEntities(JpaRepository<T, ID> entityDao, ServiceRequest<ID> request, Validator validator, T newEntity) {       
+        logger.trace("saveEntities");
+        
+        UnitOfWork outer = unitOfWork.get();
+        
+        try {
+        
+            List<ServiceRequest<ID>> items = request.getItems();
+            List<T> storedEntities = new ArrayList<>();
+        
+            if (items == null || items.isEmpty())
+                return ServiceResponseFactory.getSuccessResponse(storedEntities);
+        
+            List<T> revEntities = new ArrayList<>();
+            Set<String> versionedMasters = new HashSet<>();
+        
+            // Setup and check the version of each entity
+            for (ServiceRequest<ID> item : items) {
+            
+                T revEntity = prepareForSave(entityDao, item, (T) newEntity.getNewInstance());
+                verifyCurrentVersion(revEntity, versionedMasters, revEntity.isDirty());
+                revEntities.add(revEntity);
+            }
+        
+            // Validate all entities before saving any
+            List<ValidationError> errors = new ArrayList<>();
+        
+            for (int i=0; i<revEntities.size(); i++) {
+            
+                try {
+                    validateSave(items.get(i), validator, revEntities.get(i));
+                } catch (ServiceResponseException ex) {
+                    addItemErrors(i, ex.getResponse(), errors);
+                }
+            }
+        
+            if (errors.isEmpty() == false)
+                throw new ServiceResponseException(ServiceResponseFactory.getValidationFailResponse(errors));
+        
+            try {
+            
+                // Save the changed entities, deferring the flush so that the writes can be batched
+                for (T revEntity : revEntities) {
+                
+                    T storedEntity = revEntity.isDirty() ? entityDao.save(revEntity) : (T) revEntity.getReferenceEntity();
+                    storedEntity.copyBaseline(revEntity);
+                    storedEntities.add(storedEntity);
+                }
+            
+                entityDao.flush();
+            
+            } catch (JpaOptimisticLockingFailureException ex) {
+           
+                // Optimisitic lock exception
+                logger.debug("Optimistic lock failure on save");
+                throw new ServiceResponseException(ServiceResponseFactory.getOpLockFailResponse());
+            
+            } 
+        
+            // Any cached counts for this type of entity may now be incorrect
+            EntityMetadata.invalidateCounts(newEntity.getClass());
+        
+            // Re-read the saved entities along with the masters whose version has been updated
+            UnitOfWork work = getUnitOfWork();
+            work.setFlushed();
+        
+            for (T storedEntity : storedEntities) {
+                if (storedEntity.isIsAutoRefreshed())
+                    work.registerRefresh(storedEntity);
+            }
+        
+            completeUnitOfWork();
+        
+            // Do further business operations
+            String message = null;
+        
+            for (int i=0; i<storedEntities.size(); i++) {
+            
+                T storedEntity = storedEntities.get(i);
+                storedEntity.setMasterAndVersion();
+            
+                String itemMessage = doBusinessOperations(items.get(i), MappedBusinessEntity.REC_SAVE, storedEntity);
+            
+                if (itemMessage != null)
+                    message = itemMessage;
+            }
+        
+            return ServiceResponseFactory.getSuccessResponse(storedEntities, message);
+        
+        } finally {
+            releaseUnitOfWork(outer);
+        }
+    
+    }
+    
+    /**
+     * Adds the validation errors of a batch item to the errors for the batch.
+     * Responses that are not validation failures are re-thrown.
+     * 
+     * @param index the index of the item.
+     * @param response the failure response for the item.
+     * @param errors the errors for the batch.
+     */
+    private void addItemErrors(int index, ServiceResponse response, List<ValidationError> errors) {
+        
+        if (!ServiceResponse.RESULT_FAIL_VALIDATION_ERROR.equals(response.getResultType()))
+            throw new ServiceResponseException(response);
+        
+        List<ValidationError> itemErrors = response.getErrors();
+        
+        if (itemErrors == null || itemErrors.isEmpty()) {
+            errors.add(ValidationErrorFactory.getFieldError(response.getMessage(), String.valueOf(index)));
+            return;
+        }
+        
+        for (ValidationError error : itemErrors) {
+            error.setField(error.getField() == null ? String.valueOf(index) : index + "." + error.getField());
+            errors.add(error);
+        }
+    }
+    
     /**
      * Removes an entity from the database.
      * Performs the following actions:
@@ -388,22 +713,30 @@ public abstract class BusinessService {
         
         logger.trace("removeEntity");
         
-        // Setup the entity to be removed        
-        T remEntity = prepareForRemove(entityDao, request);
+        UnitOfWork outer = unitOfWork.get();
         
-        // Check the entity version
-        verifyCurrentVersion(remEntity);
+        try {
+        
+            // Setup the entity to be removed        
+            T remEntity = prepareForRemove(entityDao, request);
+        
+            // Check the entity version
+            verifyCurrentVersion(remEntity);
              
-        // Do  validation (throws exceptions)
-        validateRemove(request, remEntity);
+            // Do  validation (throws exceptions)
+            validateRemove(request, remEntity);
         
-        // Do further business operations
-        String message = doBusinessOperations(request, MappedBusinessEntity.REC_REMOVE, remEntity);
+            // Do further business operations
+            String message = doBusinessOperations(request, MappedBusinessEntity.REC_REMOVE, remEntity);
         
-        // Remove the entity
-        executeRemove(entityDao, (T)remEntity.getReferenceEntity());
+            // Remove the entity
+            executeRemove(entityDao, (T)remEntity.getReferenceEntity());
         
-        return ServiceResponseFactory.getSuccessResponse(message);
+            return ServiceResponseFactory.getSuccessResponse(message);
+        
+        } finally {
+            releaseUnitOfWork(outer);
+        }
     
     }
     
@@ -474,8 +807,14 @@ public abstract class BusinessService {
             entityDao.delete((T)remEntity);
              
             // Flush to ensure all changes are reflected on the database (within this txn)
+            // This also applies any version updates pending in the unit of work
             entityDao.flush(); 
-            em.flush();
+            
+            getUnitOfWork().setFlushed();
+            completeUnitOfWork();
+            
+            // Any cached counts may now be incorrect, including those of dependants
+            EntityMetadata.invalidateAllCounts();
             
             // Clear the entity manager to avoid retrieving out of date entities
             em.detach((T)remEntity);
@@ -488,6 +827,103 @@ public abstract class BusinessService {
             
         } 
 
+    }
+    
+    /**
+     * Removes a batch of entities from the database within a single operation.
+     * Each item of the batch request is a remove request, and is processed as for {@link #removeEntity} 
+     * except that the version of each distinct master is updated only once, all entities are validated
+     * before any are removed and the deletes are written with a single flush.  Validation errors are 
+     * returned as for {@link #saveEntities}.
+     * 
+     * @param <T> the type of the associated entity.
+     * @param <ID> the type of the associated entity's identifier.
+     * @param entityDao the associated entity's data access object.
+     * @param request the input batch request.
+     * @return a response containing any message from the business operations.
+     */     
+    protected <T extends MappedBusinessEntity, ID extends Serializable> ServiceResponse<T> removeEntities(JpaRepository<T, ID> entityDao, ServiceRequest<ID> request) {
+        logger.trace("removeEntities");
+        
+        UnitOfWork outer = unitOfWork.get();
+        
+        try {
+        
+            List<ServiceRequest<ID>> items = request.getItems();
+        
+            if (items == null || items.isEmpty())
+                return ServiceResponseFactory.getSuccessResponse((String) null);
+        
+            List<T> remEntities = new ArrayList<>();
+            Set<String> versionedMasters = new HashSet<>();
+        
+            // Setup and check the version of each entity
+            for (ServiceRequest<ID> item : items) {
+            
+                T remEntity = prepareForRemove(entityDao, item);
+                verifyCurrentVersion(remEntity, versionedMasters);
+                remEntities.add(remEntity);
+            }
+        
+            // Validate all entities before removing any
+            List<ValidationError> errors = new ArrayList<>();
+        
+            for (int i=0; i<remEntities.size(); i++) {
+            
+                try {
+                    validateRemove(items.get(i), remEntities.get(i));
+                } catch (ServiceResponseException ex) {
+                    addItemErrors(i, ex.getResponse(), errors);
+                }
+            }
+        
+            if (errors.isEmpty() == false)
+                throw new ServiceResponseException(ServiceResponseFactory.getValidationFailResponse(errors));
+        
+            // Do further business operations
+            String message = null;
+        
+            for (int i=0; i<remEntities.size(); i++) {
+            
+                String itemMessage = doBusinessOperations(items.get(i), MappedBusinessEntity.REC_REMOVE, remEntities.get(i));
+            
+                if (itemMessage != null)
+                    message = itemMessage;
+            }
+        
+            try {
+            
+                // Delete the reference entities, deferring the flush so that the deletes can be batched
+                for (T remEntity : remEntities) {
+                    entityDao.delete((T) remEntity.getReferenceEntity());
+                }
+            
+                entityDao.flush(); 
+            
+                getUnitOfWork().setFlushed();
+                completeUnitOfWork();
+            
+                // Any cached counts may now be incorrect, including those of dependants
+                EntityMetadata.invalidateAllCounts();
+            
+                // Clear the entity manager to avoid retrieving out of date entities
+                for (T remEntity : remEntities) {
+                    em.detach(remEntity.getReferenceEntity());
+                }
+        
+            } catch (JpaOptimisticLockingFailureException ex) {
+           
+                // Optimisitic lock exception
+                throw new ServiceResponseException(ServiceResponseFactory.getOpLockFailResponse());
+            
+            } 
+        
+            return ServiceResponseFactory.getSuccessResponse(message);
+        
+        } finally {
+            releaseUnitOfWork(outer);
+        }
+    
     }    
     
     /**
@@ -591,6 +1027,34 @@ public abstract class BusinessService {
      */
     protected void verifyCurrentVersion(MappedBusinessEntity revEntity) {           
         
+        verifyCurrentVersion(revEntity, null);
+
+    }
+    
+    /**
+     * Verifies that the entity is up to date, as part of a batch.
+     * The master entity version is only updated if it has not already been updated for the batch.
+     * 
+     * @param revEntity the revised entity.
+     * @param versionedMasters the keys of the masters that have been updated, or null if not part of a batch.
+     */
+    protected void verifyCurrentVersion(MappedBusinessEntity revEntity, Set<String> versionedMasters) {           
+        
+        verifyCurrentVersion(revEntity, versionedMasters, true);
+
+    }
+    
+    /**
+     * Verifies that the entity is up to date, optionally updating the version of its master.
+     * The master version is not updated when saving an entity that has not changed, so that other clients
+     * holding the master are not made out of date by a save that changes nothing.
+     * 
+     * @param revEntity the revised entity.
+     * @param versionedMasters the keys of the masters that have been updated, or null if not part of a batch.
+     * @param updateMaster a flag to indicate if the master version should be updated.
+     */
+    protected void verifyCurrentVersion(MappedBusinessEntity revEntity, Set<String> versionedMasters, boolean updateMaster) {           
+        
         boolean isFresh = revEntity.isCurrentVersion();
  
         if (isFresh == false) {
@@ -600,7 +1064,7 @@ public abstract class BusinessService {
         } else {
 
             // Update the master entity (if it is not the master)
-            if (revEntity.isMastered()) 
+            if (updateMaster && revEntity.isMastered() && (versionedMasters == null || versionedMasters.add(getMasterKey(revEntity)))) 
                   updateMasterVersion(revEntity);
         }
 
@@ -614,12 +1078,7 @@ public abstract class BusinessService {
      */
     protected void updateMasterVersion(BusinessEntity revEntity) {       
         
-        BusinessEntity master;
-        
-        if (revEntity.getReferenceEntity() != null)
-            master = revEntity.getReferenceEntity().getMasterEntity();
-        else
-            master = revEntity.getMasterEntity();
+        BusinessEntity master = getVersionedMaster(revEntity);
         
         try {
 
@@ -635,6 +1094,33 @@ public abstract class BusinessService {
         
     }
     
+    /**
+     * Gets the master entity whose version is updated when an entity is saved or removed.
+     * 
+     * @param revEntity the revised entity.
+     * @return the master entity.
+     */
+    private BusinessEntity getVersionedMaster(BusinessEntity revEntity) {       
+        
+        if (revEntity.getReferenceEntity() != null)
+            return revEntity.getReferenceEntity().getMasterEntity();
+        
+        return revEntity.getMasterEntity();
+    }
+    
+    /**
+     * Gets a key that identifies the master entity whose version is updated for an entity.
+     * 
+     * @param revEntity the revised entity.
+     * @return the master key.
+     */
+    private String getMasterKey(BusinessEntity revEntity) {       
+        
+        BusinessEntity master = getVersionedMaster(revEntity);
+        
+        return master.getClass().getName() + "#" + master.getEntityId();
+    }
+    
     /**
      * Retrieves the the database copy of the entity provided.
      * 
@@ -649,6 +1135,8 @@ public abstract class BusinessService {
     
     /**
      * Retrieves the the database copy of the entity provided and updates its version.
+     * When updating the version, the entity is registered with the {@link UnitOfWork} and its version 
+     * is only updated and re-read when the unit of work is completed, typically by {@link #executeSave}.
      * 
      * @param entity the entity to retrieve.
      * @param updateVersion a flag to indicate if the version should be updated.
@@ -659,26 +1147,107 @@ public abstract class BusinessService {
         String findQueryString = entity.createFindQueryString();
         
         TypedQuery<MappedBusinessEntity> findQuery = em.createQuery(findQueryString, MappedBusinessEntity.class);
+        findQuery.setParameter(1, entity.getEntityId());
         
-        if (updateVersion)
+        if (updateVersion) {
+            
             findQuery.setLockMode(LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+            
+            MappedBusinessEntity storeEntity = findQuery.getSingleResult();   
         
-        MappedBusinessEntity storeEntity = findQuery.getSingleResult();   
+            // The version is only updated on flush, so the entity is re-read once the unit of work
+            // is completed, ensuring that when the version on a mastered entity is set following 
+            // a save it picks up the version of the master updated here
+            getUnitOfWork().registerVersionUpdate(storeEntity);
+            
+            return storeEntity;
+        }
         
-        // Need to flush the changes to synchronise the database 
+        // Need to flush any pending version updates to synchronise the database 
         // Otherwise retrieves within this transaction context won't reflect the update
-        // So when the version on a mastered entity is set following a save it would pick up
-        // the old version from the master being updated here
-        // NB setting FlushMode to AUTO on the Query does not result in a flush
-        em.flush();  
+        // NB setting FlushMode to AUTO on the Query does not result in a flush of these
+        UnitOfWork work = unitOfWork.get();
+        
+        if (work != null)
+            work.flush();
         
-        // Now need to refresh the entity so as to get the version updated from the database
-        em.refresh(storeEntity);
+        // Refresh the entity as part of the retrieval so as to get the version from the database
+        findQuery.setHint(UnitOfWork.REFRESH_HINT, "true");
                 
-        return storeEntity;
+        return findQuery.getSingleResult();
  
     }
     
+    /**
+     * Gets the unit of work for the operation in progress, creating it if required.
+     * 
+     * @return the unit of work.
+     */
+    protected UnitOfWork getUnitOfWork() {
+        
+        UnitOfWork work = unitOfWork.get();
+        
+        if (work == null) {
+            
+            final UnitOfWork newWork = new UnitOfWork(em);
+            unitOfWork.set(newWork);
+            
+            // Ensure the unit of work does not outlive the transaction, e.g. if the operation fails
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (unitOfWork.get() == newWork)
+                            unitOfWork.remove();
+                    }
+                });
+            }
+            
+            work = newWork;
+        }
+        
+        return work;
+    }
+    
+    /**
+     * Releases the unit of work at the end of a save or remove operation, whether or not it succeeded.
+     * The unit of work is only released by the outermost operation, so that an operation performed by the
+     * business operations of another does not release the unit of work of the other.
+     * 
+     * @param outer the unit of work in progress when the operation started, if any.
+     */
+    protected void releaseUnitOfWork(UnitOfWork outer) {
+        
+        if (outer == null)
+            unitOfWork.remove();
+    }
+    
+    /**
+     * Completes the unit of work for the operation in progress, if any.
+     * Performs a single flush of any pending changes and re-reads the registered entities.
+     */
+    protected void completeUnitOfWork() {
+        
+        UnitOfWork work = unitOfWork.get();
+        
+        if (work == null)
+            return;
+        
+        try {
+            
+            work.complete();
+            
+        } catch (JpaOptimisticLockingFailureException|OptimisticLockException ex) {
+           
+            // Optimisitic lock exception
+            throw new ServiceResponseException(ServiceResponseFactory.getOpLockFailResponse());
+            
+        } finally {
+            unitOfWork.remove();
+        }
+    }
+    
     /**
      * Converts constraint violations such as those returned by a validator into validation errors.
      * 
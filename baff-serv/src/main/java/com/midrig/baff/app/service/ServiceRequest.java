@@ -6,6 +6,7 @@ import java.io.Serializable;
 import java.io.StringReader;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonObject;
@@ -26,6 +27,13 @@ public class ServiceRequest <ID extends Serializable> extends JsonItem{
     
     /**
      * A PageInfo holds paging information, including sort and filter criteria.
+     * <p>
+     * If seek values are provided then keyset pagination is used, where the seek values are the sort 
+     * values of the last entity on the previous page, in the same form as the filters.  An empty list 
+     * of seek values requests the first page.
+     * <p>
+     * If skip count is set then the total count is not obtained, which is sufficient for infinite scrolling;
+     * the total is returned as -1 if there are more entities following the page.
      */
     static public class PageInfo {
         
@@ -34,6 +42,8 @@ public class ServiceRequest <ID extends Serializable> extends JsonItem{
         public Integer start;
         public LinkedHashMap<String, String> sorters;
         public LinkedHashMap<String, String> filters;
+        public LinkedHashMap<String, String> seek;
+        public boolean skipCount;
         
         
         public PageInfo(Integer limit, Integer page, Integer start, String sorters, String filters) {
@@ -45,6 +55,20 @@ public class ServiceRequest <ID extends Serializable> extends JsonItem{
             this.filters = stringToHashMap(filters, "property", "value");
         
         }       
+        
+        public PageInfo(Integer limit, Integer page, Integer start, String sorters, String filters, String seek) {
+             
+            this(limit, page, start, sorters, filters);
+            
+            if (seek != null) {
+                
+                this.seek = stringToHashMap(seek, "property", "value");
+                
+                if (this.seek == null)
+                    this.seek = new LinkedHashMap<>();
+            }
+        
+        }       
                 
         public PageInfo(Integer limit, Integer page, Integer start, LinkedHashMap<String, String> sorters, LinkedHashMap<String, String> filters) {
         
@@ -90,6 +114,15 @@ public class ServiceRequest <ID extends Serializable> extends JsonItem{
             
             return hashMap;
         }
+        
+        /**
+         * Indicates if keyset pagination is requested.
+         * 
+         * @return true if seek values have been provided.
+         */
+        public boolean isKeyset() {
+            return seek != null;
+        }
             
         
     };
@@ -100,6 +133,7 @@ public class ServiceRequest <ID extends Serializable> extends JsonItem{
     final private JsonObject data;
     final private String actionCode;
     final private LinkedHashMap<String, byte[]> blobs;
+    final private List<ServiceRequest<ID>> items;
     
     /**
      * A HashMap for storing any context such as additional parameters 
@@ -109,6 +143,8 @@ public class ServiceRequest <ID extends Serializable> extends JsonItem{
     static public String REQUEST_FIND = "REQUEST_FIND";
     static public String REQUEST_SAVE = "REQUEST_SAVE";
     static public String REQUEST_REMOVE = "REQUEST_REMOVE";
+    static public String REQUEST_SAVE_BATCH = "REQUEST_SAVE_BATCH";
+    static public String REQUEST_REMOVE_BATCH = "REQUEST_REMOVE_BATCH";
     
     /**
      * ServiceRequest should be instantiated via {@link ServiceRequestFactory}.
@@ -121,12 +157,28 @@ public class ServiceRequest <ID extends Serializable> extends JsonItem{
      */
     public ServiceRequest(String requestType, ID entityId, JsonObject data, String actionCode, LinkedHashMap<String, byte[]> blobs, PageInfo pageInfo) {
                 
+        this(requestType, entityId, data, actionCode, blobs, pageInfo, null);
+    }
+    
+    /**
+     * ServiceRequest should be instantiated via {@link ServiceRequestFactory}.
+     * @param requestType The request type
+     * @param entityId The business entity identifier
+     * @param data The Json encoded data
+     * @param actionCode The service action code
+     * @param blobs Blobs to be persisted
+     * @param pageInfo The paging information
+     * @param items The item requests of a batch request
+     */
+    public ServiceRequest(String requestType, ID entityId, JsonObject data, String actionCode, LinkedHashMap<String, byte[]> blobs, PageInfo pageInfo, List<ServiceRequest<ID>> items) {
+                
         this.type = requestType;
         this.entityId = entityId; 
         this.data = data;
         this.actionCode = actionCode;
         this.pageInfo = pageInfo;
         this.blobs = blobs;
+        this.items = items;
         
         this.context = new HashMap<>();
     }
@@ -184,6 +236,15 @@ public class ServiceRequest <ID extends Serializable> extends JsonItem{
         return actionCode;
     }
     
+    /**
+     * Gets the item requests of a batch request.
+     * 
+     * @return {@link #items}, or null if this is not a batch request.
+     */
+    public List<ServiceRequest<ID>> getItems() {
+        return items;
+    }
+    
     /**
      * Gets the paging info.
      * 
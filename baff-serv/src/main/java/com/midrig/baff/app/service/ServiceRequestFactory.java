@@ -2,6 +2,7 @@ package com.midrig.baff.app.service;
 
 import java.io.Serializable;
 import java.util.LinkedHashMap;
+import java.util.List;
 import javax.json.JsonObject;
 
 /**
@@ -150,6 +151,34 @@ public class ServiceRequestFactory {
     
     } 
     
+    /**
+    * Produces a request to save a batch of entities, where each item is a save request.
+    *
+    * @param <ID> the associated entity's identifier type.
+    * @param items the save requests.
+    * @param actionCode the action code.
+    * @return the service request.
+    */  
+    public static <ID extends Serializable> ServiceRequest<ID> getSaveBatchRequest(List<ServiceRequest<ID>> items, String actionCode) {
+    
+        return new ServiceRequest(ServiceRequest.REQUEST_SAVE_BATCH, null, null, actionCode, null, null, items);
+    
+    } 
+    
+    /**
+    * Produces a request to remove a batch of entities, where each item is a remove request.
+    *
+    * @param <ID> the associated entity's identifier type.
+    * @param items the remove requests.
+    * @param actionCode the action code.
+    * @return the service request.
+    */  
+    public static <ID extends Serializable> ServiceRequest<ID> getRemoveBatchRequest(List<ServiceRequest<ID>> items, String actionCode) {
+    
+        return new ServiceRequest(ServiceRequest.REQUEST_REMOVE_BATCH, null, null, actionCode, null, null, items);
+    
+    } 
+    
     /**
     * Produces a request to remove an entity.
     *
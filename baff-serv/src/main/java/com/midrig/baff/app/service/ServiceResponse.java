@@ -1,6 +1,8 @@
 package com.midrig.baff.app.service;
 
 import com.midrig.baff.app.json.JsonItem;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 import javax.json.Json;
@@ -8,11 +10,16 @@ import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
 
 /**
  * A ServiceResponse represents a response from a service operation.
  * It is a value object used to return various immutable parameters from the service.  It should not be
  * instantiated directly, but rather via the {@link ServiceResponseFactory}.
+ * <p>
+ * A streamed response retains the items rather than converting them to Json objects on creation, so
+ * that a large page can be written directly to the output via {@link #writeJson(OutputStream)} 
+ * without being held in memory as a Json tree or string.
  *
  * @param <T> The entity or item type who's data will be included in the response. 
  */  
@@ -23,7 +30,8 @@ public class ServiceResponse<T extends JsonItem> extends JsonItem {
     final private String resultType;
     final private String resultCode;
     final private JsonObject master;
-    final private List<JsonObject> data;
+    private List<JsonObject> data;
+    final private List<T> items;
     final private String message;
     final private List<ValidationError> errors;
     final private Long total;
@@ -55,6 +63,7 @@ public class ServiceResponse<T extends JsonItem> extends JsonItem {
         this.resultType = resultType;
         this.resultCode = resultCode;
         this.data = jsonEntities;
+        this.items = null;
         this.message = message;
         this.errors = errors;
         this.total = null;
@@ -86,6 +95,7 @@ public class ServiceResponse<T extends JsonItem> extends JsonItem {
         this.resultType = resultType;
         this.resultCode = resultCode;
         this.data = jsonEntities;
+        this.items = null;
         this.message = message;
         this.errors = errors;
         this.total = total;
@@ -97,6 +107,27 @@ public class ServiceResponse<T extends JsonItem> extends JsonItem {
         }
     }
     
+    /**
+     * ServiceResponse should be instantiated via {@link ServiceResponseFactory}.
+     * The items are retained and only converted when written or when the data is requested.
+     */
+    ServiceResponse(boolean success, String resultType, String resultCode, List<T> data, Long total, String message) {
+    
+        // Indicates multiple entity records are being streamed.
+        this.singleRecord = false;
+        this.isOnlyData = false;
+        
+        this.success = success;
+        this.resultType = resultType;
+        this.resultCode = resultCode;
+        this.data = null;
+        this.items = data;
+        this.message = message;
+        this.errors = null;
+        this.total = total;
+        this.master = null;
+    }
+    
     /**
      * ServiceResponse should be instantiated via {@link ServiceResponseFactory}.
      */
@@ -111,6 +142,7 @@ public class ServiceResponse<T extends JsonItem> extends JsonItem {
         this.resultCode = resultCode;
         this.master = null;
         this.data = null;
+        this.items = null;
         this.message = message;
         this.errors = errors;
         this.total = null;
@@ -135,6 +167,7 @@ public class ServiceResponse<T extends JsonItem> extends JsonItem {
         this.resultCode = null;
         this.master = null;
         this.data = jsonEntities;
+        this.items = null;
         this.message = null;
         this.errors = null;
         this.total = null;
@@ -184,9 +217,30 @@ public class ServiceResponse<T extends JsonItem> extends JsonItem {
      * @return {@link #data}.
      */
     public List<JsonObject> getData() {
+        
+        if (data == null && items != null) {
+            
+            List<JsonObject> jsonEntities = new ArrayList<>();
+        
+            for (JsonItem json : items) {
+                jsonEntities.add(json.toJson());
+            }
+            
+            data = jsonEntities;
+        }
+        
         return data;
     }
     
+    /**
+     * Indicates if the items are retained to be streamed rather than converted on creation.
+     * 
+     * @return true if streamed.
+     */
+    public boolean isStreamed() {
+        return items != null;
+    }
+    
     /**
      * Gets the data associated a single entity being operated on.
      * 
@@ -194,6 +248,8 @@ public class ServiceResponse<T extends JsonItem> extends JsonItem {
      */
     public JsonObject getSingleItem() {
         
+        List<JsonObject> data = getData();
+        
         if (!data.isEmpty())
             return data.get(0);
         else
@@ -231,18 +287,21 @@ public class ServiceResponse<T extends JsonItem> extends JsonItem {
     
      /**
      * Converts this to a  Json object.
+     * If only the data is returned and there is none then this is an empty object.
      * 
      * @return a Json object.
      */
     @Override
     public JsonObject toJson() {
         
+        List<JsonObject> data = getData();
+        
         if (isOnlyData) {
                     
-            if (!data.isEmpty())
+            if (data != null && !data.isEmpty())
                 return data.get(0);
             else
-                return null;
+                return Json.createObjectBuilder().build();
             
         }
         
@@ -319,4 +378,114 @@ public class ServiceResponse<T extends JsonItem> extends JsonItem {
         return builder.build();
     }
     
+    /**
+     * Writes this as a Json encoded stream to the output.
+     * The output is closed once the response has been written.
+     * 
+     * @param out the output stream, which will be UTF-8 encoded.
+     */
+    public void writeJson(OutputStream out) {
+        
+        try (JsonGenerator generator = Json.createGenerator(out)) {
+            writeJson(generator);
+        }
+    }
+    
+    /**
+     * Writes this as a Json encoded stream to the writer.
+     * The writer is closed once the response has been written.
+     * 
+     * @param writer the writer.
+     */
+    public void writeJson(Writer writer) {
+        
+        try (JsonGenerator generator = Json.createGenerator(writer)) {
+            writeJson(generator);
+        }
+    }
+    
+    /**
+     * Writes this to the generator, property by property, in the same form as {@link #toJson}.
+     * The items of a streamed response are written one at a time.
+     * 
+     * @param generator the Json generator to write to.
+     */
+    @Override
+    public void writeJson(JsonGenerator generator) {
+        
+        if (isOnlyData) {
+            
+            if (items != null && !items.isEmpty())
+                items.get(0).writeJson(generator);
+            else if (data != null && !data.isEmpty())
+                writeJsonObject(generator, data.get(0));
+            else
+                generator.writeStartObject().writeEnd();
+            
+            return;
+        }
+        
+        generator.writeStartObject();
+        
+        generator.write("success", success);
+        writeJsonElement(generator, "resultType", resultType);
+        writeJsonElement(generator, "resultCode", resultCode);
+        writeJsonElement(generator, "message", message);
+        writeJsonElement(generator, "total", total);
+        
+        if (errors == null) {
+            generator.writeNull("errors");
+        } else {
+            
+            generator.writeStartArray("errors");
+            
+            for (ValidationError error : errors) {
+                
+                generator.writeStartObject()
+                        .write("id", error.getField())
+                        .write("msg", error.getMessage())
+                        .writeEnd();
+            }
+            
+            generator.writeEnd();
+        }
+        
+        if (items != null) {
+            
+            generator.writeStartArray("data");
+            
+            for (T item : items) {
+                item.writeJson(generator);
+            }
+            
+            generator.writeEnd();
+            
+        } else if (data == null) {
+            generator.writeNull("data");
+        } else {
+            
+            if (singleRecord) {
+                
+                if (data.isEmpty())
+                    generator.writeNull("data");
+                else
+                    generator.write("data", data.get(0));
+                
+            } else {
+                
+                generator.writeStartArray("data");
+                
+                for (JsonObject json : data) {
+                    generator.write(json);
+                }
+                
+                generator.writeEnd();
+            }
+        }
+        
+        writeJsonObject(generator, "master", master);
+        
+        generator.writeEnd();
+    }
+    
 }
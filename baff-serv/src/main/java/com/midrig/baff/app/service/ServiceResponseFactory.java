@@ -72,6 +72,19 @@ public class ServiceResponseFactory {
         return new ServiceResponse(true, ServiceResponse.RESULT_OK, null, data, null, null, null, null);
     } 
     
+   /**
+    * Produces a response for a successful operation that returns a list of entities and a message.
+    *
+    * @param <T> the type of entity associated with the operation.
+    * @param data the data associated with a list of entities.
+    * @param message a message associated with the operation.
+    * @return the service response.
+    */  
+    public static <T extends JsonItem> ServiceResponse<T> getSuccessResponse(List<T> data, String message) {
+
+        return new ServiceResponse(true, ServiceResponse.RESULT_OK, null, data, null, null, message, null);
+    } 
+    
    /**
     * Produces a response for a successful operation that returns a list of entities and the 
     * total count.
@@ -87,6 +100,21 @@ public class ServiceResponseFactory {
         return new ServiceResponse(true, ServiceResponse.RESULT_OK, null, data, null, total, null, null);
     }
     
+   /**
+    * Produces a response for a successful operation that returns a list of entities and the 
+    * total count, where the entities are retained to be streamed when the response is written.
+    * The entities should not be modified after the response is produced.
+    *
+    * @param <T> the type of entity associated with the operation.
+    * @param data the data associated with a list of entities.
+    * @param total the total count of entities available on the database.
+    * @return the service response.
+    */  
+    public static <T extends JsonItem> ServiceResponse<T> getStreamedResponse(List<T> data, Long total) {
+
+        return new ServiceResponse(true, ServiceResponse.RESULT_OK, null, data, total, null);
+    }
+    
    /**
     * Produces a response for a successful operation that returns a message.
     *
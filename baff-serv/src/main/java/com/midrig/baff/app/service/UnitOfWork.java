@@ -0,0 +1,144 @@
+package com.midrig.baff.app.service;
+
+import com.midrig.baff.app.entity.BusinessEntity;
+import com.midrig.baff.app.entity.EntityMetadata;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A UnitOfWork coordinates the flush and version re-read of entities within a {@link BusinessService} operation.
+ * Rather than flushing and refreshing each entity as its version is updated, entities are registered with the
+ * unit of work, which performs a single flush when it is completed followed by one re-read per entity class.
+ * It should be obtained via {@link BusinessService#getUnitOfWork}.
+ */
+public class UnitOfWork {
+
+    final private static Logger logger = LoggerFactory.getLogger(UnitOfWork.class);
+
+    /**
+     * The query hint that causes the persistence provider to refresh the entities returned.
+     */
+    final public static String REFRESH_HINT = "eclipselink.refresh";
+
+    final private EntityManager em;
+    final private Map<Class<?>, List<BusinessEntity>> refreshes = new LinkedHashMap<>();
+    private boolean isFlushRequired;
+
+    /**
+     * UnitOfWork should be obtained via {@link BusinessService#getUnitOfWork}.
+     */
+    UnitOfWork(EntityManager em) {
+        this.em = em;
+    }
+
+    /**
+     * Registers an entity whose version is to be incremented when the unit of work is flushed.
+     * The entity is re-read once the flush has taken place.
+     *
+     * @param entity the managed entity.
+     */
+    public void registerVersionUpdate(BusinessEntity entity) {
+
+        isFlushRequired = true;
+        registerRefresh(entity);
+    }
+
+    /**
+     * Registers an entity to be re-read when the unit of work is completed.
+     *
+     * @param entity the managed entity.
+     */
+    public void registerRefresh(BusinessEntity entity) {
+
+        List<BusinessEntity> entities = refreshes.get(entity.getClass());
+
+        if (entities == null) {
+            entities = new ArrayList<>();
+            refreshes.put(entity.getClass(), entities);
+        }
+
+        if (!entities.contains(entity))
+            entities.add(entity);
+    }
+
+    /**
+     * Determines if there are changes pending that require a flush.
+     *
+     * @return true if a flush is required.
+     */
+    public boolean isFlushRequired() {
+        return isFlushRequired;
+    }
+
+    /**
+     * Records that the entity manager has been flushed outside of the unit of work, e.g. via a repository.
+     */
+    public void setFlushed() {
+        isFlushRequired = false;
+    }
+
+    /**
+     * Flushes the entity manager if there are changes pending.
+     */
+    public void flush() {
+
+        if (isFlushRequired) {
+            em.flush();
+            isFlushRequired = false;
+        }
+    }
+
+    /**
+     * Completes the unit of work, flushing any pending changes and re-reading the registered entities.
+     * Entities of the same class are re-read via a single query.
+     */
+    public void complete() {
+
+        flush();
+
+        for (List<BusinessEntity> entities : refreshes.values()) {
+
+            List<BusinessEntity> managed = new ArrayList<>();
+
+            for (BusinessEntity entity : entities) {
+                if (em.contains(entity))
+                    managed.add(entity);
+            }
+
+            if (managed.isEmpty())
+                continue;
+
+            EntityMetadata metadata = managed.get(0).getMetadata();
+
+            if (managed.size() == 1 || metadata.getIdFieldName() == null) {
+
+                for (BusinessEntity entity : managed) {
+                    em.refresh(entity);
+                }
+
+            } else {
+
+                List<Object> ids = new ArrayList<>();
+
+                for (BusinessEntity entity : managed) {
+                    ids.add(entity.getEntityId());
+                }
+
+                logger.debug("complete: re-reading {} entities of {}", ids.size(), metadata.getEntityName());
+
+                em.createQuery("SELECT e FROM " + metadata.getEntityName() + " e WHERE e." + metadata.getIdFieldName() + " IN ?1")
+                        .setParameter(1, ids)
+                        .setHint(REFRESH_HINT, "true")
+                        .getResultList();
+            }
+        }
+
+        refreshes.clear();
+    }
+
+}
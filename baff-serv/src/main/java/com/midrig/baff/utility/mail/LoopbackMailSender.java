@@ -0,0 +1,119 @@
+package com.midrig.baff.utility.mail;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.MailSender;
+import org.springframework.mail.SimpleMailMessage;
+
+/**
+ * A LoopbackMailSender is an in-process MailSender that records messages rather than delivering them, for use in place
+ * of a mail server when testing, e.g. to measure the throughput of a {@link MailOutbox}.  A latency and failure rate
+ * can be set to simulate a slow or unreliable mail server.
+ */
+public class LoopbackMailSender implements MailSender {
+    
+    final private static int MAX_MESSAGES = 100;
+    
+    final private AtomicLong sentCount = new AtomicLong();
+    final private AtomicLong failedCount = new AtomicLong();
+    final private LinkedList<SimpleMailMessage> messages = new LinkedList<>();
+    final private Random random = new Random();
+    
+    private volatile long latency;
+    private volatile double failureRate;
+    
+    /**
+     * Sets the time taken to send each message.
+     * @param latency The latency in milliseconds
+     */
+    public void setLatency(long latency) {
+        this.latency = latency;
+    }
+    
+    /**
+     * Sets the proportion of messages that fail to send.
+     * @param failureRate The rate, from 0 to 1
+     */
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    @Override
+    public void send(SimpleMailMessage simpleMessage) throws MailException {
+        
+        if (latency > 0) {
+            
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new MailSendException("Interrupted", ex);
+            }
+        }
+        
+        if (failureRate > 0 && random.nextDouble() < failureRate) {
+            failedCount.incrementAndGet();
+            throw new MailSendException("Simulated failure");
+        }
+        
+        sentCount.incrementAndGet();
+        
+        synchronized (messages) {
+            
+            messages.addLast(simpleMessage);
+            
+            if (messages.size() > MAX_MESSAGES)
+                messages.removeFirst();
+        }
+        
+    }
+
+    @Override
+    public void send(SimpleMailMessage... simpleMessages) throws MailException {
+        
+        for (SimpleMailMessage simpleMessage : simpleMessages) {
+            send(simpleMessage);
+        }
+        
+    }
+    
+    public long getSentCount() {
+        return sentCount.get();
+    }
+    
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+    
+    /**
+     * Gets the most recent messages sent.
+     * @return the messages, oldest first
+     */
+    public List<SimpleMailMessage> getMessages() {
+        
+        synchronized (messages) {
+            return new ArrayList<>(messages);
+        }
+        
+    }
+    
+    /**
+     * Clears the messages and counts.
+     */
+    public void reset() {
+        
+        sentCount.set(0);
+        failedCount.set(0);
+        
+        synchronized (messages) {
+            messages.clear();
+        }
+        
+    }
+    
+}
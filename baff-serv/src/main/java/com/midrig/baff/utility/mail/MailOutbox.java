@@ -0,0 +1,363 @@
+package com.midrig.baff.utility.mail;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSender;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.util.StringUtils;
+
+/**
+ * A MailOutbox is a MailSender that queues messages for delivery by a background worker, so that the caller does not
+ * wait on the mail server.  Messages that cannot be delivered are retried with an increasing delay, up to a maximum
+ * number of attempts.
+ * <p>
+ * If a data source is set then messages are held in the mail_outbox table until they are delivered, so that those
+ * outstanding when a server stops are not lost.  Each message is owned by the outbox that queued it, and messages not
+ * updated by their owner within the recovery interval are claimed and delivered by any outbox, including the owner
+ * itself if the message was dropped from its queue by an unexpected error.  Each outbox therefore refreshes the
+ * messages it has queued on every recovery pass, and confirms that it still owns a message immediately before
+ * delivering it.
+ * <p>
+ * Note that the mail_outbox table holds the text of each message until it is delivered or abandoned, which for a
+ * password reset includes the new password, so access to the table should be restricted accordingly.  Messages that
+ * cannot be delivered are deleted once the maximum number of attempts has been made.
+ */
+public class MailOutbox implements MailSender {
+    
+    final private static Logger logger = LoggerFactory.getLogger(MailOutbox.class);
+    
+    public static final String DEF_CREATE_MESSAGE_SQL = "insert into mail_outbox (owner, sender, recipients, subject, text, attempts, updated) values (?,?,?,?,?,0,?)";
+    public static final String DEF_DELETE_MESSAGE_SQL = "delete from mail_outbox where id = ? and owner = ?";
+    public static final String DEF_UPDATE_MESSAGE_SQL = "update mail_outbox set attempts = ?, updated = ? where id = ? and owner = ?";
+    public static final String DEF_FIND_STALE_MESSAGES_SQL = "select id, owner, sender, recipients, subject, text, attempts from mail_outbox where updated < ?";
+    public static final String DEF_TOUCH_MESSAGE_SQL = "update mail_outbox set updated = ? where id = ? and owner = ?";
+    public static final String DEF_CLAIM_MESSAGE_SQL = "update mail_outbox set owner = ?, updated = ? where id = ? and owner = ?";
+    
+    // The interval at which the workers check that the outbox is still running
+    final private static long POLL_INTERVAL = 1000;
+    
+    final private String owner = UUID.randomUUID().toString();
+    final private DelayQueue<OutboxMessage> queue = new DelayQueue<>();
+    
+    private MailSender mailSender;
+    private TaskExecutor taskExecutor;
+    private JdbcTemplate jdbcTemplate;
+    
+    private int workers = 1;
+    private int maxAttempts = 5;
+    private long retryDelay = 30000;
+    private long recoveryInterval = 600000;
+    
+    private volatile boolean running;
+    private volatile long nextRecovery;
+    
+    /**
+     * Sets the MailSender that delivers the messages.
+     * @param mailSender The mail sender
+     */
+    public void setMailSender(MailSender mailSender) {
+        this.mailSender = mailSender;
+    }
+    
+    /**
+     * Sets the executor on which the workers run, each of which occupies a thread while the outbox is running.
+     * @param taskExecutor The executor
+     */
+    public void setTaskExecutor(TaskExecutor taskExecutor) {
+        this.taskExecutor = taskExecutor;
+    }
+    
+    /**
+     * Sets the data source holding the mail_outbox table, without which messages are only queued in memory.
+     * @param dataSource The data source
+     */
+    public void setDataSource(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+    
+    @Value("${mail.workers:1}")
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+    
+    @Value("${mail.maxattempts:5}")
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+    
+    /**
+     * Sets the delay before the first retry, which doubles with each subsequent attempt.
+     * The delay is limited to half the recovery interval, so that other outboxes do not claim messages awaiting retry.
+     * @param retryDelay The delay in milliseconds
+     */
+    @Value("${mail.retrydelay:30000}")
+    public void setRetryDelay(long retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+    
+    /**
+     * Sets the time after which messages not updated by their owner are claimed, and so queued again, by this outbox.
+     * @param recoveryInterval The interval in milliseconds
+     */
+    @Value("${mail.recoveryinterval:600000}")
+    public void setRecoveryInterval(long recoveryInterval) {
+        this.recoveryInterval = recoveryInterval;
+    }
+    
+    /**
+     * Starts the workers.
+     */
+    @PostConstruct
+    public void start() {
+        
+        if (mailSender == null || taskExecutor == null)
+            throw new IllegalStateException("MailOutbox requires a mailSender and taskExecutor");
+        
+        running = true;
+        
+        for (int i = 0; i < workers; i++) {
+            taskExecutor.execute(new Worker());
+        }
+        
+    }
+    
+    /**
+     * Stops the workers, leaving any undelivered messages in the mail_outbox table.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+    }
+    
+    @Override
+    public void send(SimpleMailMessage simpleMessage) throws MailException {
+        
+        queue(new SimpleMailMessage(simpleMessage));
+        
+    }
+
+    @Override
+    public void send(SimpleMailMessage... simpleMessages) throws MailException {
+        
+        for (SimpleMailMessage simpleMessage : simpleMessages) {
+            queue(new SimpleMailMessage(simpleMessage));
+        }
+        
+    }
+    
+    /**
+     * Gets the number of messages awaiting delivery by this outbox.
+     * @return the number of messages
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+    
+    /**
+     * Queues a message for delivery, persisting it first if there is a data source.
+     * @param message The message
+     */
+    protected void queue(final SimpleMailMessage message) {
+        
+        Long id = null;
+        
+        if (jdbcTemplate != null) {
+            
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            
+            jdbcTemplate.update(new PreparedStatementCreator() {
+                public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+                    PreparedStatement ps = con.prepareStatement(DEF_CREATE_MESSAGE_SQL, Statement.RETURN_GENERATED_KEYS);
+                    ps.setString(1, owner);
+                    ps.setString(2, message.getFrom());
+                    ps.setString(3, StringUtils.arrayToCommaDelimitedString(message.getTo()));
+                    ps.setString(4, message.getSubject());
+                    ps.setString(5, message.getText());
+                    ps.setTimestamp(6, new Timestamp(System.currentTimeMillis()));
+                    return ps;
+                }
+            }, keyHolder);
+            
+            id = keyHolder.getKey().longValue();
+        }
+        
+        queue.add(new OutboxMessage(id, message, 0, 0));
+        
+    }
+    
+    /**
+     * Attempts to deliver a message, requeueing it for retry if it cannot be delivered.
+     * @param message The message
+     */
+    protected void deliver(OutboxMessage message) {
+        
+        // Only deliver the message if no other outbox has claimed it, refreshing it so none can claim it while sending
+        if (message.id != null && jdbcTemplate.update(DEF_TOUCH_MESSAGE_SQL, new Timestamp(System.currentTimeMillis()), message.id, owner) == 0) {
+            logger.info("deliver: message {} has been claimed by another outbox", message.id);
+            return;
+        }
+        
+        try {
+            
+            mailSender.send(message.message);
+            
+            if (message.id != null)
+                jdbcTemplate.update(DEF_DELETE_MESSAGE_SQL, message.id, owner);
+            
+        } catch (MailException ex) {
+            
+            int attempts = message.attempts + 1;
+            
+            if (attempts >= maxAttempts) {
+                
+                // The message is not retained, as its text may contain secrets such as a new password
+                if (message.id != null)
+                    jdbcTemplate.update(DEF_DELETE_MESSAGE_SQL, message.id, owner);
+                
+                logger.error("deliver: giving up on message to {} after {} attempts", StringUtils.arrayToCommaDelimitedString(message.message.getTo()), attempts, ex);
+            } else {
+                
+                if (message.id != null)
+                    jdbcTemplate.update(DEF_UPDATE_MESSAGE_SQL, attempts, new Timestamp(System.currentTimeMillis()), message.id, owner);
+                
+                long delay = Math.min(retryDelay << Math.min(attempts - 1, 30), recoveryInterval / 2);
+                logger.warn("deliver: retrying message to {} in {}ms: {}", StringUtils.arrayToCommaDelimitedString(message.message.getTo()), delay, ex.getMessage());
+                queue.add(new OutboxMessage(message.id, message.message, attempts, delay));
+            }
+        }
+        
+    }
+    
+    /**
+     * Claims and queues the messages that have not been updated by their owner within the recovery interval, e.g.
+     * because their server has stopped, or because delivery by this outbox failed unexpectedly.  The messages queued
+     * by this outbox are refreshed first, so that they are neither claimed by another outbox nor queued twice.
+     */
+    protected void recover() {
+        
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        
+        List<Object[]> queued = new ArrayList<>();
+        
+        for (OutboxMessage message : queue) {
+            if (message.id != null)
+                queued.add(new Object[] { now, message.id, owner });
+        }
+        
+        if (!queued.isEmpty())
+            jdbcTemplate.batchUpdate(DEF_TOUCH_MESSAGE_SQL, queued);
+        
+        List<Object[]> stale = jdbcTemplate.query(DEF_FIND_STALE_MESSAGES_SQL, new RowMapper<Object[]>() {
+            public Object[] mapRow(ResultSet rs, int rowNum) throws SQLException {
+                
+                SimpleMailMessage message = new SimpleMailMessage();
+                message.setFrom(rs.getString(3));
+                message.setTo(StringUtils.commaDelimitedListToStringArray(rs.getString(4)));
+                message.setSubject(rs.getString(5));
+                message.setText(rs.getString(6));
+                
+                return new Object[] { rs.getLong(1), rs.getString(2), new OutboxMessage(rs.getLong(1), message, rs.getInt(7), 0) };
+            }
+        }, new Timestamp(now.getTime() - recoveryInterval));
+        
+        for (Object[] row : stale) {
+            
+            // Only queue the message if no other outbox has claimed it first
+            if (jdbcTemplate.update(DEF_CLAIM_MESSAGE_SQL, owner, now, row[0], row[1]) == 1)
+                queue.add((OutboxMessage) row[2]);
+        }
+        
+        if (!stale.isEmpty())
+            logger.info("recover: claimed undelivered messages, {} now queued", queue.size());
+        
+    }
+    
+    /**
+     * A Worker delivers messages as they become due, and periodically recovers stale messages.
+     */
+    private class Worker implements Runnable {
+        
+        @Override
+        public void run() {
+            
+            while (running) {
+                
+                try {
+                    
+                    long now = System.currentTimeMillis();
+                    
+                    if (jdbcTemplate != null && now >= nextRecovery) {
+                        nextRecovery = now + recoveryInterval / 2;
+                        recover();
+                    }
+                    
+                    OutboxMessage message = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                    
+                    if (message != null)
+                        deliver(message);
+                    
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException ex) {
+                    // The message is no longer queued, but remains in the mail_outbox table until it becomes stale
+                    // and is recovered, possibly by this outbox
+                    logger.error("run: ", ex);
+                }
+            }
+        }
+    }
+    
+    /**
+     * An OutboxMessage is a message queued for delivery when its delay has expired.
+     */
+    protected static class OutboxMessage implements Delayed {
+        
+        final private Long id;
+        final private SimpleMailMessage message;
+        final private int attempts;
+        final private long due;
+        
+        OutboxMessage(Long id, SimpleMailMessage message, int attempts, long delay) {
+            this.id = id;
+            this.message = message;
+            this.attempts = attempts;
+            this.due = System.currentTimeMillis() + delay;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(due - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+        }
+        
+    }
+    
+}
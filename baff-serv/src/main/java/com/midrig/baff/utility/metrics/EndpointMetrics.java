@@ -0,0 +1,141 @@
+package com.midrig.baff.utility.metrics;
+
+import com.midrig.baff.app.json.JsonItem;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+
+/**
+ * EndpointMetrics are the metrics recorded for the requests to a service endpoint, i.e. a request URI.
+ * These comprise the number of requests, those in progress, those that failed with an exception or server error, the
+ * number of each type of service result returned, and a histogram of the request latencies.
+ */
+public class EndpointMetrics extends JsonItem {
+    
+    final private String uri;
+    final private LatencyHistogram latency = new LatencyHistogram();
+    final private AtomicLong requests = new AtomicLong();
+    final private AtomicLong errors = new AtomicLong();
+    final private AtomicInteger inFlight = new AtomicInteger();
+    final private ConcurrentMap<String, AtomicLong> results = new ConcurrentHashMap<>();
+    
+    public EndpointMetrics(String uri) {
+        this.uri = uri;
+    }
+    
+    /**
+     * Records the start of a request.
+     */
+    public void begin() {
+        inFlight.incrementAndGet();
+    }
+    
+    /**
+     * Records the end of a request.
+     * @param micros The latency of the request in microseconds
+     * @param resultType The result type of the service response returned, if any
+     * @param error true if the request failed with an exception or server error
+     */
+    public void end(long micros, String resultType, boolean error) {
+        
+        inFlight.decrementAndGet();
+        requests.incrementAndGet();
+        latency.record(micros);
+        
+        if (error)
+            errors.incrementAndGet();
+        
+        if (resultType != null) {
+            
+            AtomicLong count = results.get(resultType);
+            
+            if (count == null) {
+                results.putIfAbsent(resultType, new AtomicLong());
+                count = results.get(resultType);
+            }
+            
+            count.incrementAndGet();
+        }
+        
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+    
+    /**
+     * Gets the number of responses of each result type.
+     * @return the counts keyed by result type, e.g. ServiceResponse.RESULT_FAIL_STALE_DATA
+     */
+    public Map<String, Long> getResults() {
+        
+        Map<String, Long> counts = new TreeMap<>();
+        
+        for (Map.Entry<String, AtomicLong> entry : results.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        
+        return counts;
+        
+    }
+
+    /**
+     * Converts this to a Json object, with latencies in microseconds.
+     * @return a Json object.
+     */
+    @Override
+    public JsonObject toJson() {
+        
+        JsonObjectBuilder builder = Json.createObjectBuilder();
+        
+        addJsonElement(builder, "uri", uri);
+        addJsonElement(builder, "requests", getRequests());
+        addJsonElement(builder, "errors", getErrors());
+        addJsonElement(builder, "inFlight", getInFlight());
+        
+        JsonObjectBuilder resultsBuilder = Json.createObjectBuilder();
+        
+        for (Map.Entry<String, Long> entry : getResults().entrySet()) {
+            addJsonElement(resultsBuilder, entry.getKey(), entry.getValue());
+        }
+        
+        builder.add("results", resultsBuilder);
+        
+        JsonObjectBuilder latencyBuilder = Json.createObjectBuilder();
+        
+        addJsonElement(latencyBuilder, "mean", latency.getMean());
+        addJsonElement(latencyBuilder, "p50", latency.getValueAtPercentile(50));
+        addJsonElement(latencyBuilder, "p90", latency.getValueAtPercentile(90));
+        addJsonElement(latencyBuilder, "p99", latency.getValueAtPercentile(99));
+        addJsonElement(latencyBuilder, "p999", latency.getValueAtPercentile(99.9));
+        addJsonElement(latencyBuilder, "max", latency.getMax());
+        
+        builder.add("latency", latencyBuilder);
+        
+        return builder.build();
+        
+    }
+    
+}
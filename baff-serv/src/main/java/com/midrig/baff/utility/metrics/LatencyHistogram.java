@@ -0,0 +1,123 @@
+package com.midrig.baff.utility.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A LatencyHistogram counts latencies in buckets whose width grows with the latency, in the manner of an HDR histogram,
+ * so that percentiles can be calculated to within about 3% using a fixed amount of memory.
+ * Latencies below 64 microseconds are counted exactly, and larger latencies in 32 buckets per power of two.
+ * Recording is lock free, so the histogram may be updated concurrently, although a percentile calculated while
+ * latencies are being recorded is only approximate.
+ */
+public class LatencyHistogram {
+    
+    final private static int SUB_BUCKETS = 32;
+    final private static int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+    final private static int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+    
+    // Latencies are recorded up to 2^42 microseconds, about 50 days, beyond which they are counted in the last bucket
+    final private static int MAX_SHIFT = 36;
+    final private static int BUCKET_COUNT = LINEAR_BUCKETS + MAX_SHIFT * SUB_BUCKETS;
+    
+    final private AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    final private AtomicLong count = new AtomicLong();
+    final private AtomicLong total = new AtomicLong();
+    final private AtomicLong max = new AtomicLong();
+    
+    /**
+     * Records a latency.
+     * @param micros The latency in microseconds
+     */
+    public void record(long micros) {
+        
+        if (micros < 0)
+            micros = 0;
+        
+        counts.incrementAndGet(indexOf(micros));
+        count.incrementAndGet();
+        total.addAndGet(micros);
+        
+        long current = max.get();
+        
+        while (micros > current && !max.compareAndSet(current, micros)) {
+            current = max.get();
+        }
+        
+    }
+    
+    public long getCount() {
+        return count.get();
+    }
+    
+    public long getMax() {
+        return max.get();
+    }
+    
+    /**
+     * Gets the mean latency.
+     * @return the mean in microseconds, or zero if none have been recorded
+     */
+    public long getMean() {
+        
+        long n = count.get();
+        
+        return n == 0 ? 0 : total.get() / n;
+        
+    }
+    
+    /**
+     * Gets the latency at or below which the given percentage of latencies fall.
+     * @param percentile The percentile, e.g. 99.9
+     * @return the highest latency counted in the bucket containing the percentile, in microseconds, but no more than the
+     * maximum recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        
+        long n = count.get();
+        
+        if (n == 0)
+            return 0;
+        
+        long target = Math.max(1, (long) Math.ceil(n * percentile / 100));
+        long seen = 0;
+        
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            
+            seen += counts.get(i);
+            
+            if (seen >= target)
+                return Math.min(highestValueOf(i), max.get());
+        }
+        
+        return max.get();
+        
+    }
+    
+    private static int indexOf(long micros) {
+        
+        if (micros < LINEAR_BUCKETS)
+            return (int) micros;
+        
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        
+        if (shift > MAX_SHIFT)
+            return BUCKET_COUNT - 1;
+        
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (micros >> shift) - SUB_BUCKETS;
+        
+    }
+    
+    private static long highestValueOf(int index) {
+        
+        if (index < LINEAR_BUCKETS)
+            return index;
+        
+        int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        
+        return ((subBucket + 1) << shift) - 1;
+        
+    }
+    
+}
@@ -0,0 +1,68 @@
+package com.midrig.baff.utility.metrics;
+
+import com.midrig.baff.app.controller.ServiceController;
+import com.midrig.baff.app.service.ServiceResponse;
+import com.midrig.baff.app.service.ServiceResponseFactory;
+import javax.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * A MetricsController provides the service interface for clients to retrieve the service metrics.
+ * The metrics are for administrators rather than users of the application, so access should be restricted to 
+ * a dedicated permission, e.g. access="@userSecurityHelper.isUserInRole('myapp.admin')".
+ */
+@Controller
+@RequestMapping("/metrics")
+public class MetricsController extends ServiceController { 
+
+    @Autowired
+    protected ServiceMetrics serviceMetrics;
+    
+    /**
+     * Retrieves the metrics for each service endpoint.
+     * @param request The http request
+     * @return The JSON encoded response.
+     */
+    @RequestMapping(value = "/findAll", method = RequestMethod.GET, produces = {"application/json"})
+    @ResponseBody
+    public String findAllMetrics(HttpServletRequest request) {
+
+        logger.trace("/metrics/findAll");       
+        ServiceResponse<EndpointMetrics> resp;
+        
+        try { 
+       
+            resp = ServiceResponseFactory.getSuccessResponse(serviceMetrics.getEndpoints());        
+        
+        } catch (Exception ex) {
+            
+            resp = ServiceResponseFactory.getSystemFailResponse("SERVICE_EXCEPTION", messageHelper.getMessage("exception.general", "BEX005"));
+            
+        }               
+        
+        return writeResponse(resp);
+        
+    } 
+    
+    /**
+     * Discards the metrics recorded so far.
+     * @param request The http request
+     * @return The JSON encoded response.
+     */
+    @RequestMapping(value = "/reset", method = RequestMethod.POST, produces = {"application/json"})
+    @ResponseBody
+    public String resetMetrics(HttpServletRequest request) {
+
+        logger.trace("/metrics/reset");       
+        
+        serviceMetrics.reset();
+        
+        return writeResponse(ServiceResponseFactory.getSuccessResponse());
+        
+    } 
+    
+}
@@ -0,0 +1,73 @@
+package com.midrig.baff.utility.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * ServiceMetrics holds the {@link EndpointMetrics} recorded by the
+ * {@link com.midrig.baff.app.controller.ServiceRequestFilter} for each service endpoint.
+ * The number of endpoints is limited, so that requests for arbitrary URIs cannot exhaust memory, and requests for
+ * endpoints beyond the limit are recorded together under {@link #OTHER_ENDPOINTS}.
+ */
+public class ServiceMetrics {
+    
+    final public static String OTHER_ENDPOINTS = "other";
+    
+    final private static int MAX_ENDPOINTS = 256;
+    
+    final private ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+    
+    /**
+     * Gets the metrics for an endpoint, creating them if required.
+     * @param uri The request URI, relative to the context path
+     * @return the metrics
+     */
+    public EndpointMetrics getEndpoint(String uri) {
+        
+        EndpointMetrics endpoint = endpoints.get(uri);
+        
+        if (endpoint == null) {
+            
+            if (endpoints.size() >= MAX_ENDPOINTS)
+                uri = OTHER_ENDPOINTS;
+            
+            endpoints.putIfAbsent(uri, new EndpointMetrics(uri));
+            endpoint = endpoints.get(uri);
+        }
+        
+        return endpoint;
+        
+    }
+    
+    /**
+     * Gets the metrics for all endpoints.
+     * @return the metrics, ordered by URI
+     */
+    public List<EndpointMetrics> getEndpoints() {
+        
+        List<EndpointMetrics> list = new ArrayList<>(endpoints.values());
+        
+        Collections.sort(list, new Comparator<EndpointMetrics>() {
+            @Override
+            public int compare(EndpointMetrics e1, EndpointMetrics e2) {
+                return e1.getUri().compareTo(e2.getUri());
+            }
+        });
+        
+        return list;
+        
+    }
+    
+    /**
+     * Discards the metrics recorded so far.
+     * Requests in progress are recorded against the discarded metrics.
+     */
+    public void reset() {
+        endpoints.clear();
+    }
+    
+}
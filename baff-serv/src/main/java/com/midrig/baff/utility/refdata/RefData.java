@@ -82,6 +82,26 @@ public class RefData extends MappedBusinessEntity<Integer> {
         idRefdata = id;
     }
     
+    public String getRdDomain() {
+        return rdDomain;
+    }
+
+    public String getRdClass() {
+        return rdClass;
+    }
+
+    public String getRdKey() {
+        return rdKey;
+    }
+
+    public String getRdCode() {
+        return rdCode;
+    }
+
+    public String getRdDecode() {
+        return rdDecode;
+    }
+    
     @Override
     public Timestamp getOwnVersion() {
         return null;
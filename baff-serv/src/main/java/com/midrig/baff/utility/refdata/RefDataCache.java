@@ -1,36 +1,72 @@
 package com.midrig.baff.utility.refdata;
 
-import com.midrig.baff.app.json.JsonObjectProcessor;
-import com.midrig.baff.app.service.ServiceRequest;
-import com.midrig.baff.app.service.ServiceRequestFactory;
-import com.midrig.baff.app.service.ServiceResponse;
 import com.midrig.baff.app.service.ServiceResponseException;
 import com.midrig.baff.app.service.ServiceResponseFactory;
 import com.midrig.baff.utility.locale.MessageHelper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
-import javax.json.JsonObject;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 /**
  * A RefDataCache stores reference data for efficient access by services.
+ * All reference data is loaded into an immutable store when the cache is created, which is replaced
+ * as a whole when the cache is flushed, so lookups are served from memory without locking.
+ * <p>
+ * Flushing the cache also increments a generation held in the 'refdata_generation' table.  Each server polls
+ * the generation from its lookups, at most once per 'refdata.pollinterval' milliseconds as defined in
+ * 'baff.properties', and reloads its reference data when it changes, so the caches of all servers are kept
+ * consistent without a message broker.
  */
 @Component("refDataCache")
 public class RefDataCache {  
     
      final protected Logger logger = LoggerFactory.getLogger(this.getClass());
+     
+    /**
+     * The maximum number of distinct bulk responses held for the current reference data.
+     */
+    final private static int MAX_RESPONSES = 64;
 
     @Autowired
-    protected RefDataService refDataService;
+    protected RefDataDao refDataDao;
     
     @Autowired
     protected MessageHelper messageHelper;
     
+    /**
+     * The minimum interval between polls of the reference data generation, in milliseconds.
+     * A negative interval disables polling.
+     */
+    @Value("${refdata.pollinterval:5000}")
+    protected long pollInterval;
+    
+    /**
+     * The current reference data, or null if it has not yet been loaded.
+     */
+    private volatile RefDataStore store;
+    
+    /**
+     * The time after which the reference data generation should next be polled.
+     */
+    final private AtomicLong nextPoll = new AtomicLong();
+    
     /**
      * Represents a reference data record
      */
@@ -49,10 +85,106 @@ public class RefDataCache {
         }       
     }
     
+    /**
+     * A pre-encoded bulk response of reference data, which is held until the cache is flushed.
+     */
+    static public class RefDataResponse {
+        
+        /**
+         * The entity tag, which identifies the reference data classes and the generation of the reference data.
+         */
+        public final String etag;
+        
+        /**
+         * The entity tag of the gzip encoded content, which must differ from that of the content as it is strong.
+         */
+        public final String gzipEtag;
+        public final byte[] content;
+        public final byte[] gzipContent;
+        
+        public RefDataResponse(String etag, byte[] content, byte[] gzipContent) {
+            
+            this.etag = etag;
+            this.gzipEtag = etag.substring(0, etag.length() - 1) + "-gz\"";
+            this.content = content;
+            this.gzipContent = gzipContent;
+            
+        }
+    }
+    
+    /**
+     * The codes, decodes and records of a reference data class.
+     */
+    static private class RefDataClass {
+        
+        final Map<String, String> codeMap = new HashMap<>();
+        final Map<String, String> decodeMap = new HashMap<>();
+        final List<RefData> records = new ArrayList<>();
+        
+    }
+    
+    /**
+     * An immutable snapshot of all reference data.
+     */
+    static private class RefDataStore {
+        
+        // Codes by fully qualified key, i.e. domain.class.key
+        final Map<String, String> codeMap;
+        final Map<String, RefDataClass> classMap;
+        
+        // The generation held in the database when loaded, or -1 if not available
+        final long generation;
+        
+        // Bulk responses by the sorted list of classes they contain
+        final ConcurrentMap<String, RefDataResponse> responses = new ConcurrentHashMap<>();
+        
+        RefDataStore(List<RefData> refDataList, long generation) {
+            
+            Map<String, String> codes = new HashMap<>();
+            Map<String, RefDataClass> classes = new HashMap<>();
+            
+            for (RefData refData : refDataList) {
+                
+                String refDataClass = refData.getRdDomain() + "." + refData.getRdClass();
+                RefDataClass rdClass = classes.get(refDataClass);
+                
+                if (rdClass == null) {
+                    rdClass = new RefDataClass();
+                    classes.put(refDataClass, rdClass);
+                }
+                
+                codes.put(refDataClass + "." + refData.getRdKey(), refData.getRdCode());
+                rdClass.codeMap.put(refData.getRdKey(), refData.getRdCode());
+                rdClass.decodeMap.put(refData.getRdCode(), refData.getRdDecode());
+                rdClass.records.add(refData);
+            }
+            
+            codeMap = Collections.unmodifiableMap(codes);
+            classMap = Collections.unmodifiableMap(classes);
+            this.generation = generation;
+            
+        }
+    }
+    
     public RefDataCache() {
         
     }
     
+    /**
+     * Loads the reference data when the cache is created.
+     * If this fails, e.g. because the database is unavailable, it is loaded on first use instead.
+     */
+    @PostConstruct
+    protected void initialise() {
+        
+        try {
+            store = loadStore();
+        } catch (Exception ex) {
+            logger.warn("Could not preload reference data: {}", ex.getMessage());
+        }
+        
+    }
+    
     /**
      * Get the code for a fully qualified reference key.
      * @param key The fully qualified reference data key
@@ -60,15 +192,12 @@ public class RefDataCache {
      */
     public String getCode(String key) {
         
-        String [] sep = key.split("\\.", -1);
+        String code = getStore().codeMap.get(key);
         
-        if (sep.length == 3) {
-            String refDataClass = sep[0] + "." + sep[1];
-            key = sep[2];
-            return this.getCode(key, refDataClass);
-        }
-        else {
-            logger.error("Invalid reference data class specified");
+        if (code != null) {
+            return code;
+        } else {
+            logger.error("Reference data code not found");
             return null;
         }
         
@@ -82,16 +211,12 @@ public class RefDataCache {
      */
     public String getCode(String key, String refDataClass) {       
         
-        HashMap<String, HashMap> maps = findRefData(refDataClass);       
+        RefDataClass rdClass = findRefData(refDataClass);       
         
-        if (maps == null)
+        if (rdClass == null)
             return null;
         
-        HashMap<String, String> codeMap = maps.get("codemap");
-        
-        key = refDataClass + "." + key;
-        
-        String code = codeMap.get(key);
+        String code = rdClass.codeMap.get(key);
         
         if (code != null) {
             return code;
@@ -124,14 +249,12 @@ public class RefDataCache {
      */
     public String getDecode(String code, String refDataClass) {
         
-        HashMap<String, HashMap> maps = findRefData(refDataClass);       
+        RefDataClass rdClass = findRefData(refDataClass);       
         
-        if (maps == null)
+        if (rdClass == null)
             return null;
         
-        HashMap<String, String> decodeMap = maps.get("decodemap");
-        
-        String decode = decodeMap.get(code);
+        String decode = rdClass.decodeMap.get(code);
         
         if (decode != null) {
             return decode;
@@ -142,45 +265,181 @@ public class RefDataCache {
     }
     
     /**
-     * Gets the reference data code and decode lists for the given class. 
-     * @param refDataClass
-     * @return 
+     * Gets the bulk response for a set of reference data classes, in the same format as
+     * {@link RefDataService#findRefDataClass} but containing the records of all the classes.
+     * The response is encoded once and held, along with its compressed form, until the cache is flushed.
+     * @param refDataClasses A comma separated list of reference data classes, or null for all classes
+     * @return The response
      */
-    @Cacheable("refdata")
-    private HashMap<String, HashMap> findRefData(String refDataClass) {
-      
-        ServiceResponse<RefData> resp;
+    public RefDataResponse getResponse(String refDataClasses) {
         
-        HashMap<String, HashMap> maps = null;
+        RefDataStore current = getStore();
         
-        try { 
-       
-            ServiceRequest<String> req = ServiceRequestFactory.getFindRequest(refDataClass);        
-            resp = refDataService.findRefDataClass(req); 
-            
-            List<JsonObject> list = resp.getData();
+        // Normalise the classes so that equivalent requests share a response
+        TreeSet<String> classes = new TreeSet<>();
+        
+        if (refDataClasses == null || refDataClasses.trim().isEmpty()) {
+            classes.addAll(current.classMap.keySet());
+        } else {
+            for (String refDataClass : refDataClasses.split(",")) {
+                if (current.classMap.containsKey(refDataClass.trim()))
+                    classes.add(refDataClass.trim());
+            }
+        }
+        
+        String key = classes.toString();
+        RefDataResponse response = current.responses.get(key);
+        
+        if (response == null) {
             
-            HashMap<String, String> codeMap = new HashMap<>();
-            HashMap<String, String> decodeMap = new HashMap<>();
+            response = createResponse(current, classes, key);
             
-            for(JsonObject obj: list) {
+            if (current.responses.size() < MAX_RESPONSES)
+                current.responses.putIfAbsent(key, response);
+        }
+        
+        return response;
+        
+    }
+    
+    private RefDataResponse createResponse(RefDataStore current, TreeSet<String> classes, String key) {
+        
+        List<RefData> records = new ArrayList<>();
+        
+        for (String refDataClass : classes) {
+            records.addAll(current.classMap.get(refDataClass).records);
+        }
+        
+        byte[] content = ServiceResponseFactory.getSuccessResponse(records).toString().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream gzipContent = new ByteArrayOutputStream(content.length / 4 + 64);
+        
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipContent)) {
+            gzip.write(content);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        
+        // Derived from the content so that all servers tag the same reference data alike
+        String etag = "\"" + current.generation + "-" + Integer.toHexString(Arrays.hashCode(content)) + "\"";
+        
+        logger.debug("createResponse: {} records for {}", records.size(), key);
+        
+        return new RefDataResponse(etag, content, gzipContent.toByteArray());
+        
+    }
+    
+    /**
+     * Gets the reference data codes and decodes for the given class. 
+     * @param refDataClass
+     * @return the reference data class, or null if not found
+     */
+    private RefDataClass findRefData(String refDataClass) {
+        
+        RefDataClass rdClass = getStore().classMap.get(refDataClass);
+        
+        if (rdClass == null)
+            logger.error("Invalid reference data class specified");
+        
+        return rdClass;
+        
+    }
+    
+    /**
+     * Gets the current reference data, loading it if necessary or if it has been changed by another server.
+     * @return the reference data store
+     */
+    private RefDataStore getStore() {
+        
+        RefDataStore current = store;
+        
+        if (current == null) {
             
-                JsonObjectProcessor jp = new JsonObjectProcessor(obj);
+            synchronized (this) {
                 
-                String rdKey = jp.getString("key", "");
-                String rdCode = jp.getString("code", "");
-                String rdDecode = jp.getString("decode", "");
+                if (store == null)
+                    store = loadStore();
                 
-                codeMap.put(rdKey, rdCode);
-                decodeMap.put(rdCode, rdDecode);
-            
+                current = store;
             }
             
-            maps = new HashMap<>();
+        } else if (pollInterval >= 0) {
+            
+            current = pollGeneration(current);
+        }
+        
+        return current;
+        
+    }
+    
+    /**
+     * Polls the reference data generation if the poll interval has elapsed, reloading the reference data
+     * if it has changed.  Only one thread polls at a time, while the others continue with the current store.
+     * @param current the current reference data store
+     * @return the reference data store to use
+     */
+    private RefDataStore pollGeneration(RefDataStore current) {
+        
+        long now = System.currentTimeMillis();
+        long next = nextPoll.get();
+        
+        if (now < next || !nextPoll.compareAndSet(next, now + pollInterval))
+            return current;
+        
+        long generation = findGeneration();
+        
+        if (generation < 0 || generation == current.generation)
+            return current;
+        
+        logger.info("Reference data generation changed from {} to {}, reloading", current.generation, generation);
+        
+        try {
+            
+            RefDataStore reloaded = loadStore();
+            store = reloaded;
+            return reloaded;
             
-            maps.put("codemap", codeMap);
-            maps.put("decodemap", decodeMap);
+        } catch (ServiceResponseException ex) {
+            
+            logger.error("Reference data could not be reloaded");
+            return current;
+        }
         
+    }
+    
+    /**
+     * Finds the reference data generation held in the database.
+     * @return the generation, or -1 if it is not available
+     */
+    private long findGeneration() {
+        
+        try {
+            
+            Number generation = refDataDao.findGeneration();
+            return generation == null ? 0 : generation.longValue();
+            
+        } catch (Exception ex) {
+            
+            logger.debug("Reference data generation not available: {}", ex.getMessage());
+            return -1;
+        }
+        
+    }
+    
+    /**
+     * Loads all reference data into a new store.
+     * @return the reference data store
+     */
+    private RefDataStore loadStore() {
+      
+        try { 
+       
+            // Find the generation first, so that any change made while loading causes a further reload
+            long generation = findGeneration();
+            List<RefData> refDataList = refDataDao.findAll();
+            
+            logger.debug("loadStore: loaded {} reference data records, generation {}", refDataList.size(), generation);
+            
+            return new RefDataStore(refDataList, generation);
             
         } catch (Exception ex) {
             
@@ -188,15 +447,27 @@ public class RefDataCache {
             
         }               
         
-        return maps;
-        
     } 
     
     /**
-     * Flushes the reference data cache.
+     * Flushes the reference data cache, on this and all other servers.
+     * The reference data generation is incremented so that other servers reload their reference data when
+     * they next poll.  The reference data is reloaded and replaces the current reference data once complete,
+     * so lookups continue to be served in the meantime.  If the reload fails then the current reference data
+     * is retained.
      */
-    @CacheEvict(value="refdata" , allEntries=true)
-    public void flushCache() {}
+    public void flushCache() {
+        
+        try {
+            refDataDao.incrementGeneration();
+        } catch (Exception ex) {
+            logger.warn("Could not increment the reference data generation: {}", ex.getMessage());
+        }
+        
+        RefDataStore reloaded = loadStore();
+        store = reloaded;
+        
+    }
 
    
 }
@@ -6,7 +6,10 @@ import com.midrig.baff.app.service.ServiceRequestFactory;
 import com.midrig.baff.app.service.ServiceResponse;
 import com.midrig.baff.app.service.ServiceResponseException;
 import com.midrig.baff.app.service.ServiceResponseFactory;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -24,6 +27,9 @@ public class RefDataController extends ServiceController {
     @Autowired
     protected RefDataService refDataService;
     
+    @Autowired
+    protected RefDataCache refDataCache;
+    
     /**
      * Retrieves a list of reference data records for the given reference data class.
      * @param refDataClass The reference data class
@@ -54,9 +60,73 @@ public class RefDataController extends ServiceController {
             
         }               
         
-        return resp.toString();
+        return writeResponse(resp);
         
     } 
+    
+    /**
+     * Retrieves the reference data records for many reference data classes in a single response.
+     * The response is tagged with an ETag that changes whenever the reference data is reloaded, so clients and
+     * proxies can revalidate it, and is compressed if the client accepts gzip encoding.
+     * @param refDataClasses A comma separated list of reference data classes, or none for all classes
+     * @param request The http request
+     * @param response The http response
+     * @throws IOException if the response cannot be written
+     */
+    @RequestMapping(value = "/findAll", method = RequestMethod.GET)
+    public void findAllRefData(
+            @RequestParam(value = "refdataclasses", required = false) String refDataClasses,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+
+        logger.trace("/refdata/findAll: {}", refDataClasses);       
+        RefDataCache.RefDataResponse refDataResponse;
+        
+        try { 
+       
+            refDataResponse = refDataCache.getResponse(refDataClasses);
+        
+        } catch (ServiceResponseException valEx) {
+            
+            writeResponse(valEx.getResponse(), response);
+            return;
+            
+        } catch (Exception ex) {
+            
+            writeResponse(ServiceResponseFactory.getSystemFailResponse("SERVICE_EXCEPTION", messageHelper.getMessage("exception.general", "BEX002")), response);
+            return;
+            
+        }
+        
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        boolean isGzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        
+        // Each encoding has its own tag, but either identifies the same reference data
+        response.setHeader("ETag", isGzip ? refDataResponse.gzipEtag : refDataResponse.etag);
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("Vary", "Accept-Encoding");
+        
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        
+        if (ifNoneMatch != null && (ifNoneMatch.contains(refDataResponse.etag) || ifNoneMatch.contains(refDataResponse.gzipEtag)
+                || ifNoneMatch.trim().equals("*"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        
+        byte[] content = refDataResponse.content;
+        
+        if (isGzip) {
+            response.setHeader("Content-Encoding", "gzip");
+            content = refDataResponse.gzipContent;
+        }
+        
+        response.setContentType("application/json");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentLength(content.length);
+        response.getOutputStream().write(content);
+        
+    }
 
    
 }
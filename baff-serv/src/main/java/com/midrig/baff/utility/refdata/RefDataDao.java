@@ -3,7 +3,10 @@ package com.midrig.baff.utility.refdata;
 
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository; 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * The data access object for reference data persistence.
@@ -13,4 +16,17 @@ public interface RefDataDao extends JpaRepository<RefData, Integer> {
    
     List<RefData> findRefDataClass(String rdDomain, String rdClass);
     
+    /**
+     * Finds the generation of the reference data, which is incremented whenever it is changed by any server.
+     * @return the generation, or null if it has never been incremented
+     */
+    @Query(value = "SELECT generation FROM refdata_generation WHERE id = 1", nativeQuery = true)
+    Number findGeneration();
+    
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO refdata_generation (id, generation) VALUES (1, 1) "
+            + "ON DUPLICATE KEY UPDATE generation = generation + 1", nativeQuery = true)
+    int incrementGeneration();
+    
 }
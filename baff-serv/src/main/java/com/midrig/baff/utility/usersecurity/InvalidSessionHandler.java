@@ -2,6 +2,7 @@
 
 package com.midrig.baff.utility.usersecurity; 
     
+import com.midrig.baff.app.controller.ServiceRequestFilter;
 import com.midrig.baff.app.json.JsonItem;
 import com.midrig.baff.app.service.ServiceResponse;
 import com.midrig.baff.app.service.ServiceResponseFactory;
@@ -63,6 +64,7 @@ public class InvalidSessionHandler implements InvalidSessionStrategy {
 
             response.setStatus(HttpServletResponse.SC_OK); 
 
+            ServiceRequestFilter.setResultType(request, resp);
             response.getWriter().write(resp.toString());
             response.getWriter().flush();
             response.getWriter().close();
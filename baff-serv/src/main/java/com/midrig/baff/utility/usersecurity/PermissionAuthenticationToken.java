@@ -0,0 +1,48 @@
+package com.midrig.baff.utility.usersecurity;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+/**
+ * A PermissionAuthenticationToken is an authenticated user that holds the user's compiled {@link PermissionSet},
+ * so that the permissions are compiled once, at login, and retained with the security context for the session.
+ */
+public class PermissionAuthenticationToken extends UsernamePasswordAuthenticationToken {
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * The compiled permissions, which are recompiled if the token is deserialised, e.g. on another server.
+     */
+    private transient volatile PermissionSet permissions;
+    
+    /**
+     * Creates a token for an authenticated user.
+     * @param authentication The authenticated user
+     */
+    public PermissionAuthenticationToken(Authentication authentication) {
+        
+        super(authentication.getPrincipal(), authentication.getCredentials(), authentication.getAuthorities());
+        setDetails(authentication.getDetails());
+        
+        permissions = new PermissionSet(getAuthorities());
+        
+    }
+    
+    /**
+     * Gets the user's permissions
+     * @return the compiled permissions
+     */
+    public PermissionSet getPermissions() {
+        
+        PermissionSet compiled = permissions;
+        
+        if (compiled == null) {
+            compiled = new PermissionSet(getAuthorities());
+            permissions = compiled;
+        }
+        
+        return compiled;
+        
+    }
+    
+}
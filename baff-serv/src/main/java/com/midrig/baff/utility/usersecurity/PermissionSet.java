@@ -0,0 +1,91 @@
+package com.midrig.baff.utility.usersecurity;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * A PermissionSet is a compiled set of user permissions, so that a permission can be tested with a single
+ * lookup and bit test rather than by searching the user's authorities.
+ * Each distinct permission is assigned a bit by a registry shared by all permission sets.  The known permissions
+ * may be registered at startup via {@link #register}, and any others are registered as they are encountered.
+ * <p>
+ * Bits are only meaningful within the JVM that assigned them, so permission sets should not be serialised.
+ */
+public class PermissionSet {
+    
+    final private static ConcurrentMap<String, Integer> registry = new ConcurrentHashMap<>();
+    
+    final private BitSet permissions = new BitSet();
+    
+    /**
+     * Compiles the permissions for a set of authorities.
+     * @param authorities The authorities granted to the user
+     */
+    public PermissionSet(Collection<? extends GrantedAuthority> authorities) {
+        
+        for (GrantedAuthority authority : authorities) {
+            if (authority.getAuthority() != null)
+                permissions.set(register(authority.getAuthority()));
+        }
+        
+    }
+    
+    /**
+     * Registers a permission, assigning it a bit if it is not already registered.
+     * @param permission The permission
+     * @return the bit assigned to the permission
+     */
+    public static int register(String permission) {
+        
+        Integer index = registry.get(permission);
+        
+        if (index == null) {
+            
+            synchronized (registry) {
+                
+                index = registry.get(permission);
+                
+                if (index == null) {
+                    index = registry.size();
+                    registry.put(permission, index);
+                }
+            }
+        }
+        
+        return index;
+        
+    }
+    
+    /**
+     * Determines if the set contains a permission.
+     * @param permission The permission
+     * @return true if the permission is granted
+     */
+    public boolean contains(String permission) {
+        
+        Integer index = registry.get(permission);
+        
+        return index != null && permissions.get(index);
+        
+    }
+    
+    /**
+     * Determines if the set contains any of a number of permissions.
+     * @param permissions The permissions
+     * @return true if any of the permissions is granted
+     */
+    public boolean containsAny(String... permissions) {
+        
+        for (String permission : permissions) {
+            if (contains(permission))
+                return true;
+        }
+        
+        return false;
+        
+    }
+    
+}
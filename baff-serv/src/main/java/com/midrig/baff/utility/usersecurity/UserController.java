@@ -62,7 +62,8 @@ public class UserController extends ServiceController {
             
             SecurityContext securityContext =  SecurityContextHolder.getContext();
             
-            securityContext.setAuthentication(authResult);
+            // Compile the permissions once at login, for use by the UserSecurityHelper
+            securityContext.setAuthentication(new PermissionAuthenticationToken(authResult));
             
             ArrayList<UserPermission> permissions = new ArrayList<>();
             
@@ -81,7 +82,7 @@ public class UserController extends ServiceController {
         }
     
         
-        return response.toString();
+        return writeResponse(response);
         
         
     }
@@ -113,7 +114,7 @@ public class UserController extends ServiceController {
         }
     
         
-        return response.toString();
+        return writeResponse(response);
         
         
     }
@@ -150,7 +151,7 @@ public class UserController extends ServiceController {
         }
     
         
-        return response.toString();
+        return writeResponse(response);
         
         
     }
@@ -189,7 +190,7 @@ public class UserController extends ServiceController {
         }
     
         
-        return response.toString();
+        return writeResponse(response);
         
         
     }
@@ -224,7 +225,7 @@ public class UserController extends ServiceController {
         }
     
         
-        return response.toString();
+        return writeResponse(response);
         
         
     }
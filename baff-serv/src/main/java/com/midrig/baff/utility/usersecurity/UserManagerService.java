@@ -8,14 +8,20 @@ import java.security.SecureRandom;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.support.JdbcDaoSupport;
 import org.springframework.mail.MailSender;
@@ -23,6 +29,7 @@ import org.springframework.mail.SimpleMailMessage;
 import org.springframework.security.authentication.encoding.Md5PasswordEncoder;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -34,6 +41,10 @@ import org.springframework.security.provisioning.UserDetailsManager;
  * The UserManagerService wraps a UserDetailsManager to manage application specific
  * user details and user management processing.  It can also provide the associated user details to an
  * authentication provider.
+ * <p>
+ * Users are looked up by email, along with their authorities, via a single query and cached for a short time, so that
+ * repeated logins and enquiries do not each query the user database.  The cache is cleared for a user when they are
+ * updated via this service, but changes made elsewhere, e.g. on another server, are only seen when the cache expires.
  */
 
 public class UserManagerService extends JdbcDaoSupport implements UserDetailsService {
@@ -49,6 +60,9 @@ public class UserManagerService extends JdbcDaoSupport implements UserDetailsSer
     public static final String DEF_CREATE_USER_ATTR_SQL = "insert into user_attributes (username, displayname, email) values (?,?,?)";
     public static final String DEF_DELETE_USER_ATTR_SQL = "delete from user_attributes where username = ?";
     public static final String DEF_UPDATE_USER_ATTR_SQL = "update user_attributes set displayname = ?, email = ? where username = ?";
+    public static final String DEF_FIND_USER_BY_EMAIL_SQL = "select a.username, a.displayname, a.email, u.password, u.enabled, p.authority "
+            + "from user_attributes a join users u on u.username = a.username left join authorities p on p.username = u.username "
+            + "where a.email = ?";
     
     private static final Random RANDOM = new SecureRandom();
     private static final String passwordChars = "abcdefghjkmnpqrstuvwxyzABCDEFGHJKMNPQRSTUVWXYZ23456789";
@@ -59,6 +73,9 @@ public class UserManagerService extends JdbcDaoSupport implements UserDetailsSer
     private String emailFromAddress;
     private Md5PasswordEncoder passwordEncoder = new Md5PasswordEncoder();
     
+    private long cacheTtl = 60000;
+    private Map<String, CachedUser> userCache = createUserCache(1000);
+    
     @Autowired
     protected MessageHelper messageHelper;
     
@@ -69,6 +86,34 @@ public class UserManagerService extends JdbcDaoSupport implements UserDetailsSer
      public void setEmailFromAddress(String emailFromAddress) {
         this.emailFromAddress = emailFromAddress;
     }
+     
+    /**
+     * Sets the time for which users are cached, as per the user.cachettl property.
+     * @param cacheTtl The time in milliseconds, or 0 to disable caching
+     */
+    @Value("${user.cachettl:60000}")
+    public void setCacheTtl(long cacheTtl) {
+        this.cacheTtl = cacheTtl;
+    }
+    
+    /**
+     * Sets the maximum number of users cached, as per the user.cachesize property.
+     * @param cacheSize The number of users
+     */
+    @Value("${user.cachesize:1000}")
+    public void setCacheSize(int cacheSize) {
+        this.userCache = createUserCache(cacheSize);
+    }
+    
+    private static Map<String, CachedUser> createUserCache(final int cacheSize) {
+        
+        return Collections.synchronizedMap(new LinkedHashMap<String, CachedUser>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
     
     public static String generateRandomPassword()
     {
@@ -86,27 +131,89 @@ public class UserManagerService extends JdbcDaoSupport implements UserDetailsSer
     public ServiceResponse<UserAttributes> findUserAttributes(String email) {        
       
         // The email should have been passed in so get the username
-        UserAttributes attr = loadUserAttributesByEmail(email);
+        CachedUser user = findUser(email);
         
-        if (attr == null)
+        if (user == null)
             throw new UsernameNotFoundException(messageHelper.getMessage("user.update.notexists"));
         else
-            return ServiceResponseFactory.getSuccessResponse(attr);
+            return ServiceResponseFactory.getSuccessResponse(user.attributes);
         
     }
     
     public UserDetails loadUserByUsername(String username) {
       
-        // The email should have been passed in so get the username
-        UserAttributes attr = loadUserAttributesByEmail(username);
+        // The email should have been passed in so get the user
+        CachedUser user = findUser(username);
         
-        if (attr == null)
+        if (user == null || user.authorities.isEmpty())
             throw new UsernameNotFoundException(messageHelper.getMessage("user.update.notexists"));
         else
-            return userDetailsManager.loadUserByUsername(attr.getUsername());
+            return user.toUserDetails();
+        
+    }
+    
+    /**
+     * Finds a user by email, from the cache if present and not expired
+     * @param email The user's email
+     * @return the user, or null if there is no such user
+     */
+    protected CachedUser findUser(String email) {
+        
+        long now = System.currentTimeMillis();
+        CachedUser user = userCache.get(email);
+        
+        if (user != null && user.expires > now)
+            return user;
+        
+        user = queryUser(email);
+        
+        if (user == null)
+            userCache.remove(email);
+        else if (cacheTtl > 0) {
+            user.expires = now + cacheTtl;
+            userCache.put(email, user);
+        }
+        
+        return user;
+        
+    }
+    
+    /**
+     * Reads a user's attributes, details and authorities in a single query
+     * @param email The user's email
+     * @return the user, or null if there is no such user
+     */
+    protected CachedUser queryUser(String email) {
+        
+        final List<CachedUser> users = new ArrayList<>(1);
+        
+        getJdbcTemplate().query(DEF_FIND_USER_BY_EMAIL_SQL, new String[] { email },
+                new RowCallbackHandler() {
+                    public void processRow(ResultSet rs) throws SQLException {
+                        
+                        if (users.isEmpty())
+                            users.add(new CachedUser(new UserAttributes(rs.getString(1), rs.getString(2), rs.getString(3)),
+                                    rs.getString(4), rs.getBoolean(5)));
+                        
+                        String authority = rs.getString(6);
+                        
+                        if (authority != null)
+                            users.get(0).authorities.add(new SimpleGrantedAuthority(authority));
+                    }
+                });
+        
+        return users.isEmpty() ? null : users.get(0);
         
     }
     
+    /**
+     * Removes a user from the cache, after they have been updated
+     * @param email The user's email
+     */
+    protected void evictUser(String email) {
+        userCache.remove(email);
+    }
+    
     public UserAttributes loadUserAttributes(String usernamel) {
         
         List<UserAttributes> userAttrs = getJdbcTemplate().query(DEF_FIND_USER_ATTR_SQL, new String[] { usernamel },
@@ -189,6 +296,8 @@ public class UserManagerService extends JdbcDaoSupport implements UserDetailsSer
 
 		});
         
+        evictUser(email);
+        
     }
     
     public void updateUser(final String email, String displayname, final String oldPassword, final String newPassword, final String permissions) {
@@ -231,6 +340,8 @@ public class UserManagerService extends JdbcDaoSupport implements UserDetailsSer
 
 		});
         
+        evictUser(email);
+        
     }
     
     public void resetUser(final String email) {
@@ -260,6 +371,8 @@ public class UserManagerService extends JdbcDaoSupport implements UserDetailsSer
         
         userDetailsManager.updateUser(user);        
         
+        evictUser(email);
+        
        
     }
     
@@ -269,6 +382,31 @@ public class UserManagerService extends JdbcDaoSupport implements UserDetailsSer
         
     }
     
+    /**
+     * A CachedUser holds the details of a user as read by {@link #queryUser}.
+     * The user details are created afresh each time they are requested, since the authentication provider may erase
+     * the password from those it is given.
+     */
+    protected static class CachedUser {
+        
+        final private UserAttributes attributes;
+        final private String password;
+        final private boolean enabled;
+        final private List<GrantedAuthority> authorities = new ArrayList<>();
+        private long expires;
+        
+        CachedUser(UserAttributes attributes, String password, boolean enabled) {
+            this.attributes = attributes;
+            this.password = password;
+            this.enabled = enabled;
+        }
+        
+        UserDetails toUserDetails() {
+            return new User(attributes.getUsername(), password, enabled, true, true, true, authorities);
+        }
+        
+    }
+    
     
     
 }
\ No newline at end of file
@@ -1,34 +1,89 @@
 package com.midrig.baff.utility.usersecurity;
 
-import org.springframework.security.core.GrantedAuthority;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 
 /**
  * A UserSecurityHelper is a utility to enquire on user details.
+ * The user's permissions are tested via the {@link PermissionSet} compiled for the session, so this may also be
+ * used from security expressions, e.g. access="@userSecurityHelper.hasAnyRole('myapp.read', 'myapp.update')".
  */  
 
 @Component
 public class UserSecurityHelper { 
     
+    /**
+     * Registers the known permissions, so that they are assigned bits in the order given.
+     * @param permissions A comma separated list of permissions, as per the security.permissions property
+     */
+    @Value("${security.permissions:}")
+    public void setPermissions(String permissions) {
+        
+        for (String permission : permissions.split(",")) {
+            if (!permission.trim().isEmpty())
+                PermissionSet.register(permission.trim());
+        }
+        
+    }
+    
     /**
      * Determines if the current user has role permissions
-     * @param message The message property
-     * @return the message
+     * @param role The permission
+     * @return true if the user has the permission
      */
     public boolean isUserInRole(String role) {   
         
-         SecurityContext securityContext =  SecurityContextHolder.getContext();
+        PermissionSet permissions = getPermissions();
         
-        for (GrantedAuthority authority : securityContext.getAuthentication().getAuthorities()) {
-                if (role.equals(authority.getAuthority()))
-                        return true;                
-        }
+        return permissions != null && permissions.contains(role);
+            
+    }
 
-        return false;
+    /**
+     * Determines if the current user has any of a number of role permissions
+     * @param roles The permissions
+     * @return true if the user has any of the permissions
+     */
+    public boolean hasAnyRole(String... roles) {   
+        
+        PermissionSet permissions = getPermissions();
+        
+        return permissions != null && permissions.containsAny(roles);
             
     }
+    
+    /**
+     * Gets the compiled permissions of the current user.
+     * A user authenticated other than at login, e.g. by a filter, has their permissions compiled on first use and
+     * their authentication replaced, so that the compiled permissions are retained in the security context.
+     * @return the permissions, or null if there is no current user
+     */
+    protected PermissionSet getPermissions() {
+        
+        SecurityContext securityContext =  SecurityContextHolder.getContext();
+        Authentication authentication = securityContext.getAuthentication();
+        
+        if (authentication == null)
+            return null;
+        
+        if (authentication instanceof PermissionAuthenticationToken)
+            return ((PermissionAuthenticationToken) authentication).getPermissions();
+        
+        if (authentication.isAuthenticated() && authentication.getClass() == UsernamePasswordAuthenticationToken.class) {
+            
+            PermissionAuthenticationToken token = new PermissionAuthenticationToken(authentication);
+            securityContext.setAuthentication(token);
+            
+            return token.getPermissions();
+        }
+        
+        return new PermissionSet(authentication.getAuthorities());
+        
+    }
 
    
 }
@@ -2,6 +2,7 @@
 
 package com.midrig.baff.utility.usersecurity; 
     
+import com.midrig.baff.app.controller.ServiceRequestFilter;
 import com.midrig.baff.app.json.JsonItem;
 import com.midrig.baff.app.service.ServiceResponse;
 import com.midrig.baff.app.service.ServiceResponseFactory;
@@ -44,6 +45,7 @@ public class WebAccessDeniedHandler implements AccessDeniedHandler {
     
     response.setStatus(HttpServletResponse.SC_FORBIDDEN); 
     
+    ServiceRequestFilter.setResultType(request, resp);
     response.getWriter().write(resp.toString());
     response.getWriter().flush();
     response.getWriter().close();
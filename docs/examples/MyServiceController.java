@@ -25,7 +25,7 @@ public class MyServiceController extends ServiceController {
             
         }               
             
-        return resp.toString();
+        return writeResponse(resp);
         
     } 
     
@@ -55,7 +55,7 @@ public class MyServiceController extends ServiceController {
             
         }        
             
-        return resp.toString();
+        return writeResponse(resp);
 
     }
 
@@ -84,7 +84,7 @@ public class MyServiceController extends ServiceController {
             
         }
         
-        return resp.toString();
+        return writeResponse(resp);
 
     }
    
@@ -114,7 +114,7 @@ public class MyServiceController extends ServiceController {
             
         }
         
-        return resp.toString();
+        return writeResponse(resp);
     }
     
 }
@@ -5,6 +5,7 @@ package com.midrig.evaluator.dao;
 import com.midrig.evaluator.domain.Option;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository; 
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -12,6 +13,9 @@ public interface OptionDao extends JpaRepository<Option, Integer> {
     
     List<Option> findByName(Integer scorecardId, String name);
     List<Option> findByScorecard(Integer scorecardId);
+    
+    @Query("SELECT o.scorecard.id, COUNT(o) FROM Option o WHERE o.scorecard.id IN ?1 GROUP BY o.scorecard.id")
+    List<Object[]> countByScorecard(List<Integer> scorecardIds);
    
    
 }
@@ -3,11 +3,119 @@
 package com.midrig.evaluator.dao;
 
 import com.midrig.evaluator.domain.Score;
+import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository; 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface ScoreDao extends JpaRepository<Score, Integer> {
-    
-    
+
+    // Creates the missing zero scores for each option, criteria and evaluator of a scorecard's group in a single insert
+    static final String INSERT_MISSING_SCORES =
+            "INSERT INTO eval_score (option_id, criteria_id, evaluator_id, score, last_updated) "
+            + "SELECT o.id, c.id, v.id, 0, CURRENT_TIMESTAMP FROM eval_option o "
+            + "JOIN eval_criteria c ON c.scorecard_id = o.scorecard_id "
+            + "JOIN eval_scorecard s ON s.id = o.scorecard_id "
+            + "JOIN eval_evaluator v ON v.group_id = s.group_id ";
+
+    static final String WHERE_MISSING_SCORE =
+            " AND NOT EXISTS (SELECT 1 FROM eval_score x WHERE x.option_id = o.id AND x.criteria_id = c.id AND x.evaluator_id = v.id)";
+
+    @Modifying
+    @Query(value = INSERT_MISSING_SCORES + "WHERE o.id = ?1" + WHERE_MISSING_SCORE, nativeQuery = true)
+    int createScoresForOption(Integer optionId);
+
+    @Modifying
+    @Query(value = INSERT_MISSING_SCORES + "WHERE c.id = ?1" + WHERE_MISSING_SCORE, nativeQuery = true)
+    int createScoresForCriteria(Integer criteriaId);
+
+    @Modifying
+    @Query(value = INSERT_MISSING_SCORES + "WHERE v.id = ?1" + WHERE_MISSING_SCORE, nativeQuery = true)
+    int createScoresForEvaluator(Integer evaluatorId);
+
+    // Totals and counts the non-zero scores for each option and criteria, returning rows of option, criteria, total and count
+    static final String SUM_SCORES =
+            "SELECT o, c, SUM(CASE WHEN s.score > 0 THEN s.score ELSE 0 END), SUM(CASE WHEN s.score > 0 THEN 1 ELSE 0 END) "
+            + "FROM Score s JOIN s.option o JOIN s.criteria c WHERE o.id IN ?1 ";
+
+    static final String GROUP_SCORES = " GROUP BY o, c ORDER BY c.name, o.name";
+
+    @Query(SUM_SCORES + "AND s.evaluator.id = ?2" + GROUP_SCORES)
+    List<Object[]> sumScoresByOption(List<Integer> optionIds, Integer evaluatorId);
+
+    // Recalculates the summaries of the scores for each option and criteria, replacing any existing summary.
+    // This reads all the scores of each summary, so is only used for the scores created with a new option or criteria.
+    static final String UPSERT_SUMMARIES =
+            "INSERT INTO eval_score_summary (option_id, criteria_id, score_count, nonzero_count, total) "
+            + "SELECT s.option_id, s.criteria_id, COUNT(*), SUM(s.score > 0), SUM(s.score) FROM eval_score s ";
+
+    static final String UPDATE_SUMMARIES =
+            " GROUP BY s.option_id, s.criteria_id ON DUPLICATE KEY UPDATE score_count = VALUES(score_count), "
+            + "nonzero_count = VALUES(nonzero_count), total = VALUES(total)";
+
+    static final String GROUP_OPTIONS =
+            "SELECT o.id FROM eval_option o JOIN eval_scorecard c ON c.id = o.scorecard_id WHERE c.group_id = ?1";
+
+    @Modifying
+    @Query(value = UPSERT_SUMMARIES + "WHERE s.option_id = ?1" + UPDATE_SUMMARIES, nativeQuery = true)
+    int updateSummariesForOption(Integer optionId);
+
+    @Modifying
+    @Query(value = UPSERT_SUMMARIES + "WHERE s.criteria_id = ?1" + UPDATE_SUMMARIES, nativeQuery = true)
+    int updateSummariesForCriteria(Integer criteriaId);
+
+    // Adds the scores of an evaluator to the summaries, reading only the evaluator's own scores rather than every score of 
+    // the summaries, which would lock the scores being saved by other evaluators
+    @Modifying
+    @Query(value = "INSERT INTO eval_score_summary (option_id, criteria_id, score_count, nonzero_count, total) "
+            + "SELECT s.option_id, s.criteria_id, COUNT(*), SUM(s.score > 0), SUM(s.score) FROM eval_score s "
+            + "WHERE s.evaluator_id = ?1 GROUP BY s.option_id, s.criteria_id ON DUPLICATE KEY UPDATE "
+            + "score_count = score_count + VALUES(score_count), nonzero_count = nonzero_count + VALUES(nonzero_count), "
+            + "total = total + VALUES(total)", nativeQuery = true)
+    int addSummariesForEvaluator(Integer evaluatorId);
+
+    @Modifying
+    @Query(value = "UPDATE eval_score_summary ss JOIN (SELECT s.option_id, s.criteria_id, COUNT(*) score_count, "
+            + "SUM(s.score > 0) nonzero_count, SUM(s.score) total FROM eval_score s WHERE s.evaluator_id = ?1 "
+            + "GROUP BY s.option_id, s.criteria_id) e ON e.option_id = ss.option_id AND e.criteria_id = ss.criteria_id "
+            + "SET ss.score_count = ss.score_count - e.score_count, ss.nonzero_count = ss.nonzero_count - e.nonzero_count, "
+            + "ss.total = ss.total - e.total", nativeQuery = true)
+    int subtractSummariesForEvaluator(Integer evaluatorId);
+
+    // Applies the change of a single score to its summary, which is created if this is the first score
+    @Modifying
+    @Query(value = "INSERT INTO eval_score_summary (option_id, criteria_id, score_count, nonzero_count, total) "
+            + "VALUES (?1, ?2, 1, ?3, ?4) ON DUPLICATE KEY UPDATE score_count = score_count + 1, "
+            + "nonzero_count = nonzero_count + ?3, total = total + ?4", nativeQuery = true)
+    int addToSummary(Integer optionId, Integer criteriaId, int nonzeroCount, int total);
+
+    @Modifying
+    @Query(value = "UPDATE eval_score_summary SET score_count = score_count + ?3, nonzero_count = nonzero_count + ?4, "
+            + "total = total + ?5 WHERE option_id = ?1 AND criteria_id = ?2", nativeQuery = true)
+    int adjustSummary(Integer optionId, Integer criteriaId, int scoreCountChange, int nonzeroCountChange, int totalChange);
+
+    // Summaries are removed along with their option or criteria, but must be removed explicitly when their last score is
+    @Modifying
+    @Query(value = "DELETE FROM eval_score_summary WHERE option_id = ?1 AND criteria_id = ?2 AND score_count = 0", nativeQuery = true)
+    int removeEmptySummary(Integer optionId, Integer criteriaId);
+
+    @Modifying
+    @Query(value = "DELETE FROM eval_score_summary WHERE option_id IN (" + GROUP_OPTIONS + ") AND score_count = 0", nativeQuery = true)
+    int removeEmptySummariesForGroup(Integer groupId);
+
+    // Finds the scores of an evaluator for an option, fetching the entities shown with each score
+    @Query("SELECT s FROM Score s JOIN FETCH s.criteria c JOIN FETCH s.option JOIN FETCH s.evaluator e "
+            + "WHERE s.option.id = ?1 AND e.username = ?2 ORDER BY c.name")
+    List<Score> findByOptionForEvaluator(Integer optionId, String username);
+
+    @Query("SELECT s.option.id, COUNT(s) FROM Score s WHERE s.option.id IN ?1 AND s.evaluator.username = ?2 GROUP BY s.option.id")
+    List<Object[]> countByOptionForEvaluator(List<Integer> optionIds, String username);
+
+    // Returns rows of option, criteria, total and count of the non-zero scores, as for sumScoresByOption
+    @Query("SELECT o, c, ss.total, ss.nonzeroCount FROM ScoreSummary ss JOIN ss.option o JOIN ss.criteria c "
+            + "WHERE o.id IN ?1 ORDER BY c.name, o.name")
+    List<Object[]> findSummariesByOption(List<Integer> optionIds);
+
 }
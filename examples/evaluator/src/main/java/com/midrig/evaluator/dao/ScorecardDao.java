@@ -5,12 +5,29 @@ package com.midrig.evaluator.dao;
 import com.midrig.evaluator.domain.Scorecard; 
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository; 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface ScorecardDao extends JpaRepository<Scorecard, Integer> {
     
     List<Scorecard> findByNameInGroup(Integer evalGroupId, String name);
+    List<Scorecard> findByGroup(Integer evalGroupId);
+    
+    @Query("SELECT s.id FROM Scorecard s WHERE s.evalGroup.id = ?1")
+    List<Integer> findIdsByGroup(Integer evalGroupId);
+    
+    @Query("SELECT s.evalGroup.id, COUNT(s) FROM Scorecard s WHERE s.evalGroup.id IN ?1 GROUP BY s.evalGroup.id")
+    List<Object[]> countByGroup(List<Integer> evalGroupIds);
+    
+    @Query(value = "SELECT generation FROM eval_analysis_generation WHERE scorecard_id = ?1", nativeQuery = true)
+    Number findAnalysisGeneration(Integer scorecardId);
+    
+    @Modifying
+    @Query(value = "INSERT INTO eval_analysis_generation (scorecard_id, generation) VALUES (?1, 1) "
+            + "ON DUPLICATE KEY UPDATE generation = generation + 1", nativeQuery = true)
+    int incrementAnalysisGeneration(Integer scorecardId);
    
    
 }
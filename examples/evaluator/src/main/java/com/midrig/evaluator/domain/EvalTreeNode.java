@@ -40,7 +40,7 @@ public class EvalTreeNode<T extends BusinessEntity> extends TreeNode<T> {
                 name = "Add a new group.....";
                 description = "";
             } else {
-                leaf = !canAddChild && evalGroup.getScorecardList().isEmpty(); 
+                leaf = !canAddChild && !hasChildren(entity, evalGroup.getScorecardList()); 
                 name = evalGroup.getName();
                 description = evalGroup.getDescription();
             }
@@ -54,7 +54,7 @@ public class EvalTreeNode<T extends BusinessEntity> extends TreeNode<T> {
                 name = "Add a new scorecard.....";
                 description = "";
             } else {
-                leaf = !canAddChild && scorecard.getOptionList().isEmpty(); 
+                leaf = !canAddChild && !hasChildren(entity, scorecard.getOptionList()); 
                 name = scorecard.getName();
                 description = scorecard.getDescription();
             }
@@ -68,7 +68,7 @@ public class EvalTreeNode<T extends BusinessEntity> extends TreeNode<T> {
                 name = "Add a new option.....";
                 description = "";
             } else {
-                leaf = option.getScoreList().isEmpty(); 
+                leaf = !hasChildren(entity, option.getScoreList()); 
                 name = option.getName();
                 description = option.getDescription();
             }
@@ -89,6 +89,23 @@ public class EvalTreeNode<T extends BusinessEntity> extends TreeNode<T> {
         return leaf;
 
     }
+    
+    /**
+     * Determines if an entity has children, via the child counter if set, otherwise by loading the children.
+     * @param entity
+     * @param children
+     * @return true if the entity has children
+     */
+    protected boolean hasChildren(T entity, List<?> children) {
+        
+        Long count = getChildCount(entity);
+        
+        if (count != null)
+            return count > 0;
+        
+        return !children.isEmpty();
+        
+    }
    
     
 }
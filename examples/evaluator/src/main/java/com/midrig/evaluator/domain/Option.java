@@ -8,12 +8,13 @@ package com.midrig.evaluator.domain;
 
 import com.midrig.baff.app.entity.BusinessEntity;
 import com.midrig.baff.app.entity.MappedBusinessEntity;
-import static com.midrig.baff.app.json.JsonItem.addJsonElement;
+import com.midrig.baff.app.json.JsonFieldWriter;
 import com.midrig.baff.app.json.JsonObjectProcessor;
 import com.midrig.baff.app.service.ValidationError;
 import java.sql.Timestamp;
 import java.util.List;
 import javax.json.JsonObjectBuilder;
+import javax.json.stream.JsonGenerator;
 import javax.persistence.Basic;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
@@ -142,26 +143,35 @@ public class Option extends MappedBusinessEntity<Integer> {
     @Override
     public void addJson(JsonObjectBuilder builder) {
         
-        addJsonElement(builder, "id", id);
-        addJsonElement(builder, "name", name);
-        addJsonElement(builder, "description", description);     
-        addJsonElement(builder, "lastUpdated", lastUpdated);
+        addJsonFields(JsonFieldWriter.forBuilder(builder));
+    } 
+    
+    @Override
+    public void addJson(JsonGenerator generator) {
         
-        addJsonElement(builder, "score", getScore());
-        addJsonElement(builder, "relativeScore", getRelativeScore());
-        addJsonElement(builder, "weightedScore", getWeightedScore());
-        addJsonElement(builder, "relativeWeightedScore", getRelativeWeightedScore());
-        addJsonElement(builder, "balancedScore", getBalancedScore());
-        addJsonElement(builder, "relativeBalancedScore", getRelativeBalancedScore());
+        addJsonFields(JsonFieldWriter.forGenerator(generator));
+    } 
+    
+    /**
+     * Writes the fields of this option, so that it is built and streamed alike.
+     * 
+     * @param fields the writer to add the fields to.
+     */
+    protected void addJsonFields(JsonFieldWriter fields) {
         
-        addJsonElement(builder, "scorecard.id", getScorecardId());
+        fields.write("id", id);
+        fields.write("name", name);
+        fields.write("description", description);     
+        fields.write("lastUpdated", lastUpdated);
         
-        // Deal with nullable domain objects
-        /*if (scorecard == null) {
-            addJsonNull(builder, "scorecard.id");
-        } else {
-            addJsonElement(builder, "scorecard.id", scorecard.getId());
-        }*/
+        fields.write("score", getScore());
+        fields.write("relativeScore", getRelativeScore());
+        fields.write("weightedScore", getWeightedScore());
+        fields.write("relativeWeightedScore", getRelativeWeightedScore());
+        fields.write("balancedScore", getBalancedScore());
+        fields.write("relativeBalancedScore", getRelativeBalancedScore());
+        
+        fields.write("scorecard.id", getScorecardId());
 
     } 
     
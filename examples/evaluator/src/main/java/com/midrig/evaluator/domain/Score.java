@@ -8,14 +8,14 @@ package com.midrig.evaluator.domain;
 
 import com.midrig.baff.app.entity.BusinessEntity;
 import com.midrig.baff.app.entity.MappedBusinessEntity;
-import static com.midrig.baff.app.json.JsonItem.addJsonElement;
-import static com.midrig.baff.app.json.JsonItem.addJsonNull;
+import com.midrig.baff.app.json.JsonFieldWriter;
 import com.midrig.baff.app.json.JsonObjectProcessor;
 import com.midrig.baff.app.service.ValidationError;
 import java.sql.Timestamp;
 import java.util.Date;
 import java.util.List;
 import javax.json.JsonObjectBuilder;
+import javax.json.stream.JsonGenerator;
 import javax.persistence.Basic;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
@@ -119,41 +119,64 @@ public class Score extends MappedBusinessEntity<Integer> implements Comparable<S
         return getLastUpdated();
     };
     
+    @Override
+    public boolean isPagedWithTotal() {
+        
+        // Scores are listed in large pages, so retrieve the total along with the page
+        return true;
+    }
+    
     
     @Override
     public void addJson(JsonObjectBuilder builder) {
         
-        addJsonElement(builder, "id", id);
-        addJsonElement(builder, "notes", notes);
-        addJsonElement(builder, "score", score);        
-        addJsonElement(builder, "lastUpdated", lastUpdated);
+        addJsonFields(JsonFieldWriter.forBuilder(builder));
+    } 
+    
+    @Override
+    public void addJson(JsonGenerator generator) {
+        
+        addJsonFields(JsonFieldWriter.forGenerator(generator));
+    } 
+    
+    /**
+     * Writes the fields of this score, so that it is built and streamed alike.
+     * 
+     * @param fields the writer to add the fields to.
+     */
+    protected void addJsonFields(JsonFieldWriter fields) {
+        
+        fields.write("id", id);
+        fields.write("notes", notes);
+        fields.write("score", score);        
+        fields.write("lastUpdated", lastUpdated);
         
-        addJsonElement(builder, "relativeScore", relativeScore);
-        addJsonElement(builder, "weightedScore", weightedScore);
-        addJsonElement(builder, "relativeWeightedScore", relativeWeightedScore);
-        addJsonElement(builder, "balancedScore", balancedScore);
-        addJsonElement(builder, "relativeBalancedScore", relativeBalancedScore);
+        fields.write("relativeScore", relativeScore);
+        fields.write("weightedScore", weightedScore);
+        fields.write("relativeWeightedScore", relativeWeightedScore);
+        fields.write("balancedScore", balancedScore);
+        fields.write("relativeBalancedScore", relativeBalancedScore);
         
         // Deal with nullable domain objects
         if (getCriteria() == null) {
-            addJsonNull(builder, "criteria.id");
+            fields.writeNull("criteria.id");
         } else {
-            addJsonElement(builder, "criteria.id", getCriteria().getId());
-            addJsonElement(builder, "criteria.name", getCriteria().getName());
+            fields.write("criteria.id", getCriteria().getId());
+            fields.write("criteria.name", getCriteria().getName());
         }
         
         if (getOption() == null) {
-            addJsonNull(builder, "option.id");
+            fields.writeNull("option.id");
         } else {
-            addJsonElement(builder, "option.id", getOption().getId());
-            addJsonElement(builder, "option.name", getOption().getName());
+            fields.write("option.id", getOption().getId());
+            fields.write("option.name", getOption().getName());
         }
         
         if (getEvaluator() == null) {
-            addJsonNull(builder, "evaluator.id");
+            fields.writeNull("evaluator.id");
         } else {
-            addJsonElement(builder, "evaluator.id", getEvaluator().getId());
-            addJsonElement(builder, "evaluator.username", getEvaluator().getUsername());        
+            fields.write("evaluator.id", getEvaluator().getId());
+            fields.write("evaluator.username", getEvaluator().getUsername());        
         }
 
     } 
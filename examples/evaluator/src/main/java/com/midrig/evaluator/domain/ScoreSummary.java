@@ -0,0 +1,125 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package com.midrig.evaluator.domain;
+
+import java.io.Serializable;
+import java.util.Objects;
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+
+/**
+ * The running aggregates of the scores of all evaluators for an option and criteria.
+ * The summary is maintained by the database via {@link com.midrig.evaluator.dao.ScoreDao} whenever a score is
+ * changed, so it is read only and not cached.
+ *
+ * @author midrig
+ */
+@Entity
+@Table(name = "eval_score_summary")
+@IdClass(ScoreSummary.Key.class)
+@Cacheable(false)
+public class ScoreSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @JoinColumn(name = "option_id", referencedColumnName = "id")
+    @ManyToOne(optional = false)
+    private Option option;
+
+    @Id
+    @JoinColumn(name = "criteria_id", referencedColumnName = "id")
+    @ManyToOne(optional = false)
+    private Criteria criteria;
+
+    @Column(name = "score_count")
+    private Integer scoreCount;
+
+    @Column(name = "nonzero_count")
+    private Integer nonzeroCount;
+
+    @Column(name = "total")
+    private Integer total;
+
+    public ScoreSummary() {
+    }
+
+    public Option getOption() {
+        return option;
+    }
+
+    public Criteria getCriteria() {
+        return criteria;
+    }
+
+    /**
+     * Gets the number of scores, including those not yet scored.
+     *
+     * @return {@link #scoreCount}.
+     */
+    public Integer getScoreCount() {
+        return scoreCount;
+    }
+
+    /**
+     * Gets the number of non-zero scores, which are those included in the totals.
+     *
+     * @return {@link #nonzeroCount}.
+     */
+    public Integer getNonzeroCount() {
+        return nonzeroCount;
+    }
+
+    public Integer getTotal() {
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "com.midrig.evaluator.domain.ScoreSummary[ option=" + option + ", criteria=" + criteria + " ]";
+    }
+
+    /**
+     * The primary key of a ScoreSummary.
+     */
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private Integer option;
+        private Integer criteria;
+
+        public Key() {
+        }
+
+        public Key(Integer option, Integer criteria) {
+            this.option = option;
+            this.criteria = criteria;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+
+            if (!(object instanceof Key))
+                return false;
+
+            Key other = (Key) object;
+
+            return Objects.equals(option, other.option) && Objects.equals(criteria, other.criteria);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(option, criteria);
+        }
+    }
+
+}
@@ -44,7 +44,8 @@ import org.eclipse.persistence.annotations.Cache;
 @XmlRootElement
 @NamedQueries({
     @NamedQuery(name = "Scorecard.findAll", query = "SELECT s FROM Scorecard s"),
-    @NamedQuery(name = "Scorecard.findByNameInGroup", query = "SELECT s FROM Scorecard s WHERE s.evalGroup.id = ?1 AND s.name = ?2")
+    @NamedQuery(name = "Scorecard.findByNameInGroup", query = "SELECT s FROM Scorecard s WHERE s.evalGroup.id = ?1 AND s.name = ?2"),
+    @NamedQuery(name = "Scorecard.findByGroup", query = "SELECT s FROM Scorecard s WHERE s.evalGroup.id = ?1")
     })
 public class Scorecard extends MappedBusinessEntity<Integer> {
     private static final long serialVersionUID = 1L;
@@ -145,7 +145,7 @@ public class ScorecardTpl extends MappedBusinessEntity<Integer> {
     }
      
     @Override
-    public String createWhereClause(HashMap<String, String> filters) {
+    public String createWhereClause(HashMap<String, String> filters, List<Object> parameters, String alias) {
           
         String whereClause = "";
         String addClause = "";
@@ -156,15 +156,15 @@ public class ScorecardTpl extends MappedBusinessEntity<Integer> {
             String owner = filters.remove("owningUsername");
             String isPrivate = filters.get("isPrivate");
 
-            whereClause = super.createWhereClause(filters);
+            whereClause = super.createWhereClause(filters, parameters, alias);
             
             if (isPrivate == null && owner != null)
-                addClause = " (e.isPrivate = false OR e.owningUsername = \'" + owner + "\')";
+                addClause = " (" + alias + ".isPrivate = false OR " + alias + ".owningUsername = " + addQueryParameter(parameters, owner) + ")";
             else if (isPrivate == "true")
-                addClause = " e.owningUsername = \'" + owner + "\'";
+                addClause = " " + alias + ".owningUsername = " + addQueryParameter(parameters, owner);
             
             if (addClause != "") {
-                 if (whereClause == "")
+                 if (whereClause.isEmpty())
                     whereClause += " WHERE" + addClause;
                 else
                     whereClause += " AND" + addClause;
@@ -0,0 +1,167 @@
+package com.midrig.evaluator.service;
+
+import com.midrig.evaluator.dao.ScorecardDao;
+import com.midrig.evaluator.domain.Scorecard;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * An AnalysisCache holds the analysis results calculated for a scorecard.
+ * Results are keyed by the scorecard, its version and its analysis generation, along with the evaluator the
+ * results were calculated for.  The version changes whenever an option or criteria of the scorecard is saved,
+ * but scores are not mastered by the scorecard so the generation must be incremented via {@link #invalidate}
+ * when they are saved.
+ * <p>
+ * The generation is held in the eval_analysis_generation table, so the results cached by any server are
+ * invalidated by changes made on another.  It is incremented once the changes have committed, in its own short
+ * transaction, so that saves are not serialized on the generation row.  A result calculated from the scores
+ * before the commit is keyed on the earlier generation, so is superseded by the increment.
+ */
+public class AnalysisCache {
+
+    final private static Logger logger = LoggerFactory.getLogger(AnalysisCache.class);
+
+    final private static int MAX_RESULTS = 512;
+
+    final private ScorecardDao scorecardDao;
+
+    final private TransactionTemplate transactionTemplate;
+
+    final private Map<String, Object> results = Collections.synchronizedMap(new LinkedHashMap<String, Object>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+            return size() > MAX_RESULTS;
+        }
+    });
+
+    /**
+     * Creates a cache whose generations are held via the scorecard data access object.
+     *
+     * @param scorecardDao the scorecard data access object.
+     * @param transactionManager the transaction manager used to increment the generations.
+     */
+    public AnalysisCache(ScorecardDao scorecardDao, PlatformTransactionManager transactionManager) {
+        this.scorecardDao = scorecardDao;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Creates the key for a type of result for a scorecard.
+     * This reads the current generation of the scorecard, so should be called before the scores are read.
+     *
+     * @param type the type of result.
+     * @param scorecard the scorecard.
+     * @param evaluatorId the evaluator the result is for.
+     * @return the key.
+     */
+    public String createKey(String type, Scorecard scorecard, Integer evaluatorId) {
+
+        Number generation = scorecardDao.findAnalysisGeneration(scorecard.getId());
+
+        return type + ":" + scorecard.getId() + ":" + scorecard.getOwnVersion() + ":"
+                + (generation == null ? 0 : generation.longValue()) + ":" + evaluatorId;
+    }
+
+    /**
+     * Gets a cached result.
+     *
+     * @param key the key.
+     * @return the result, or null if not cached.
+     */
+    public Object get(String key) {
+        return results.get(key);
+    }
+
+    /**
+     * Caches a result.
+     * The result should not be modified once cached.
+     *
+     * @param key the key.
+     * @param result the result.
+     */
+    public void put(String key, Object result) {
+        results.put(key, result);
+    }
+
+    /**
+     * Invalidates the results for a scorecard by incrementing its generation.
+     * If called within a transaction the generation is incremented after it commits, otherwise immediately.
+     *
+     * @param scorecardId the scorecard identifier.
+     */
+    public void invalidate(Integer scorecardId) {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            incrementGenerations(Collections.singleton(scorecardId));
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Set<Integer> pending = (Set<Integer>) TransactionSynchronizationManager.getResource(this);
+
+        if (pending == null) {
+
+            final Set<Integer> newPending = new TreeSet<>();
+            TransactionSynchronizationManager.bindResource(this, newPending);
+
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    incrementGenerations(newPending);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(AnalysisCache.this);
+                }
+            });
+
+            pending = newPending;
+        }
+
+        pending.add(scorecardId);
+    }
+
+    /**
+     * Invalidates the results for all scorecards in an evaluation group, as for {@link #invalidate}.
+     *
+     * @param evalGroupId the evaluation group identifier.
+     */
+    public void invalidateGroup(Integer evalGroupId) {
+
+        for (Integer scorecardId : scorecardDao.findIdsByGroup(evalGroupId))
+            invalidate(scorecardId);
+    }
+
+    // Increments the generations in their own transaction, in order of identifier to avoid deadlocks
+    private void incrementGenerations(final Set<Integer> scorecardIds) {
+
+        try {
+            transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    for (Integer scorecardId : scorecardIds)
+                        scorecardDao.incrementAnalysisGeneration(scorecardId);
+                }
+            });
+
+        } catch (RuntimeException ex) {
+            // The changes have already committed, so can only be reported
+            logger.warn("Failed to increment the analysis generation of scorecards " + scorecardIds, ex);
+        }
+    }
+
+}
@@ -47,9 +47,11 @@ public interface EvaluatorService {
     public ServiceResponse<Score> findScore(ServiceRequest<Integer> request);
     public ServiceResponse<Score> findAllScores(ServiceRequest<Integer> request);
     public ServiceResponse<Score> saveScore(ServiceRequest<Integer> request);
+    public ServiceResponse<Score> saveScores(ServiceRequest<Integer> request);
     public ServiceResponse<Score> removeScore(ServiceRequest<Integer> request);
     
     public ServiceResponse<Analysis> findAllAnalysis(ServiceRequest<Integer> request);
+    public ServiceResponse<Analysis> findGroupAnalysis(ServiceRequest<Integer> request);
     public ServiceResponse<ChartSeries> findChartSeries(ServiceRequest<Integer> request);
     
     public ServiceResponse<ScorecardTpl> findScorecardTpl(ServiceRequest<Integer> request);
@@ -1,6 +1,8 @@
 package com.midrig.evaluator.service;
 
+import com.midrig.baff.app.entity.EntityMetadata;
 import com.midrig.baff.app.entity.MappedBusinessEntity;
+import com.midrig.baff.app.entity.TreeNode;
 import com.midrig.baff.app.entity.TreeNode.NodeId;
 import com.midrig.baff.app.service.BusinessService;
 import com.midrig.baff.app.service.ServiceRequest;
@@ -33,12 +35,19 @@ import com.midrig.evaluator.domain.EvalTreeNode;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;  
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.json.JsonObject;
 import javax.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
  
@@ -74,14 +83,48 @@ public class EvaluatorServiceImpl extends BusinessService implements EvaluatorSe
     @Autowired
     protected CriteriaTplDao criteriaTplDao;
     
+    @Autowired
+    protected PlatformTransactionManager transactionManager;
+    
     @Resource 
     Validator validator;
     
+    protected AnalysisCache analysisCache;
+    
+    protected ScoreAnalyser scoreAnalyser;
+    
+    protected int analysisParallelism;
+    
     public EvaluatorServiceImpl() {
         super();
         
     }
     
+    @PostConstruct
+    protected void createAnalysers() {
+        
+        analysisCache = new AnalysisCache(scorecardDao, transactionManager);
+        scoreAnalyser = new ScoreAnalyser(analysisParallelism);
+    }
+    
+    @PreDestroy
+    protected void shutdownScoreAnalyser() {
+        
+        if (scoreAnalyser != null)
+            scoreAnalyser.shutdown();
+    }
+    
+    /**
+     * Sets the number of threads used to analyse scores, as defined by the 'evaluator.analysis.parallelism'
+     * property in 'baff.properties'.  The default of zero uses the number of processors.
+     * 
+     * @param parallelism the number of threads.
+     */
+    @Value("${evaluator.analysis.parallelism:0}")
+    public void setAnalysisParallelism(int parallelism) {
+        this.analysisParallelism = parallelism;
+    }
+    
 
     @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     @Override
@@ -183,7 +226,17 @@ public class EvaluatorServiceImpl extends BusinessService implements EvaluatorSe
     public ServiceResponse<Evaluator> removeEvaluator(ServiceRequest<Integer> request) {     
         logger.trace("removeEvaluator");
         
-        return removeEntity(evaluatorDao, request);
+        // Get the group before the evaluator is removed
+        Evaluator evaluator = evaluatorDao.findOne(request.getEntityId());
+        Integer groupId = evaluator == null || evaluator.getEvalGroup() == null ? null : evaluator.getEvalGroup().getId();
+        
+        ServiceResponse<Evaluator> response = removeEntity(evaluatorDao, request);
+        
+        // The evaluator's scores have been subtracted from the summaries, so remove any that are now empty
+        if (groupId != null)
+            scoreDao.removeEmptySummariesForGroup(groupId);
+        
+        return response;
  
     }
     
@@ -318,12 +371,32 @@ public class EvaluatorServiceImpl extends BusinessService implements EvaluatorSe
         
     }
 
+    @Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+    @Override
+    public ServiceResponse<Score> saveScores(ServiceRequest<Integer> request) {      
+        logger.trace("saveScores");
+        
+        return saveEntities(scoreDao, request, validator, new Score());
+        
+    }
+
     @Transactional(readOnly = false, propagation = Propagation.REQUIRED)
     @Override    
     public ServiceResponse<Score> removeScore(ServiceRequest<Integer> request) {     
         logger.trace("removeScore");
         
-        return removeEntity(scoreDao, request);
+        Score score = scoreDao.findOne(request.getEntityId());
+        ServiceResponse<Score> response = removeEntity(scoreDao, request);
+        
+        if (score != null) {
+            Integer optionId = score.getOption().getId();
+            Integer criteriaId = score.getCriteria().getId();
+            int value = score.getScore() == null ? 0 : score.getScore();
+            scoreDao.adjustSummary(optionId, criteriaId, -1, value > 0 ? -1 : 0, -value);
+            scoreDao.removeEmptySummary(optionId, criteriaId);
+        }
+        
+        return response;
  
     }
     
@@ -388,50 +461,165 @@ public class EvaluatorServiceImpl extends BusinessService implements EvaluatorSe
                 return ServiceResponseFactory.getSuccessResponse(messageHelper.getMessage("operation.analysis.no_analysis"));            
                 //return ServiceResponseFactory.getSuccessResponse(analysisList);
 
-            // Call calculateOptionScoreValues with scorecard.optionList to score the options
-            List<Option> optionList = calculateOptionScoreValues(request, scorecard.getOptionList());
-
-            Analysis actualScore = new Analysis("Best Actual Score");
-            Analysis weightedScore = new Analysis("Best Weighted Score");
-            Analysis balancedScore = new Analysis("Best Balanced Score");
-
-            analysisList.add(actualScore);
-            analysisList.add(weightedScore);
-            analysisList.add(balancedScore);
-
-
-            // Loop through list to identify the top scores
-            for(Option option : optionList) {
-
-                actualScore.setIfWinner(option.getName(), option.getScore());
-                weightedScore.setIfWinner(option.getName(), option.getWeightedScore());
-                balancedScore.setIfWinner(option.getName(), option.getBalancedScore());
+            // Use the cached analysis if the scorecard is unchanged
+            Integer evaluatorId = request.getData().getInt("evaluatorId", -1);
+            String cacheKey = analysisCache.createKey("analysis", scorecard, evaluatorId);
+            List<Analysis> cachedList = (List<Analysis>) analysisCache.get(cacheKey);
+            
+            if (cachedList != null)
+                return ServiceResponseFactory.getSuccessResponse(cachedList,  new Long(cachedList.size()));
+            
+            // Consolidate the scores on the database and analyse these in parallel
+            List<Score> consolidatedScores = findConsolidatedScores(scorecard.getOptionList(), evaluatorId);
+            ScoreMatrix optionMatrix = new ScoreMatrix(scorecard.getName(), scorecard.getOptionList(), scorecard.getCriteriaList(), consolidatedScores);
+            ScoreMatrix criteriaMatrix = evaluatorId == -2 ? createEvaluatorScoreMatrix(scorecard) : optionMatrix;
+            
+            ScoringKernel[] optionKernels = scoreAnalyser.analyseOptions(Collections.singletonList(optionMatrix))[0];
+            
+            analysisList.addAll(createAnalysis("", optionMatrix, optionKernels, criteriaMatrix));
+            
+            analysisCache.put(cacheKey, analysisList);
 
+            return ServiceResponseFactory.getSuccessResponse(analysisList,  new Long(analysisList.size()));
+         
+    }
+    
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    @Override
+    public ServiceResponse<Analysis> findGroupAnalysis(ServiceRequest<Integer> request) {       
+        logger.trace("findGroupAnalysis");
+        
+        List<Analysis> analysisList = new ArrayList<>();
+        
+        EvalGroup evalGroup = evalGroupDao.findOne(request.getData().getInt("groupId"));
+        Integer evaluatorId = request.getData().getInt("evaluatorId", -1);
+        
+        if (evalGroup == null)
+            return ServiceResponseFactory.getSuccessResponse(messageHelper.getMessage("operation.analysis.no_analysis"));
+        
+        // Only scorecards with criteria and options can be analysed
+        List<Scorecard> scorecards = new ArrayList<>();
+        List<Option> options = new ArrayList<>();
+        
+        for (Scorecard scorecard : evalGroup.getScorecardList()) {
+            
+            if (!scorecard.getCriteriaList().isEmpty() && !scorecard.getOptionList().isEmpty()) {
+                scorecards.add(scorecard);
+                options.addAll(scorecard.getOptionList());
             }
+        }
+        
+        if (scorecards.isEmpty())
+            return ServiceResponseFactory.getSuccessResponse(messageHelper.getMessage("operation.analysis.no_analysis"));
+        
+        // Consolidate the scores of all scorecards in a single query and divide them by scorecard
+        Map<Integer, List<Score>> scorecardScores = new HashMap<>();
+        
+        for (Score score : findConsolidatedScores(options, evaluatorId)) {
+            
+            List<Score> scores = scorecardScores.get(score.getOption().getScorecardId());
+            
+            if (scores == null) {
+                scores = new ArrayList<>();
+                scorecardScores.put(score.getOption().getScorecardId(), scores);
+            }
+            
+            scores.add(score);
+        }
+        
+        List<ScoreMatrix> optionMatrices = new ArrayList<>();
+        List<ScoreMatrix> criteriaMatrices = new ArrayList<>();
+        
+        for (Scorecard scorecard : scorecards) {
+            
+            List<Score> scores = scorecardScores.get(scorecard.getId());
+            ScoreMatrix optionMatrix = new ScoreMatrix(scorecard.getName(), scorecard.getOptionList(), scorecard.getCriteriaList(), 
+                    scores == null ? new ArrayList<Score>() : scores);
+            
+            optionMatrices.add(optionMatrix);
+            criteriaMatrices.add(evaluatorId == -2 ? createEvaluatorScoreMatrix(scorecard) : optionMatrix);
+        }
+        
+        // Analyse the options of all scorecards in parallel
+        ScoringKernel[][] optionKernels = scoreAnalyser.analyseOptions(optionMatrices);
+        
+        for (int i=0; i<optionMatrices.size(); i++) {
+            
+            ScoreMatrix optionMatrix = optionMatrices.get(i);
+            analysisList.addAll(createAnalysis(optionMatrix.getName() + ": ", optionMatrix, optionKernels[i], criteriaMatrices.get(i)));
+        }
+        
+        return ServiceResponseFactory.getSuccessResponse(analysisList,  new Long(analysisList.size()));
+        
+    }
+    
+    /**
+     * Creates the analysis of a scorecard, which identifies the best option overall and for each criteria.
+     * 
+     * @param prefix the prefix of the analysis categories.
+     * @param optionMatrix the consolidated scores of the scorecard.
+     * @param optionKernels the option scores, as calculated from the option matrix.
+     * @param criteriaMatrix the scores to identify the best option for each criteria.
+     * @return the analysis.
+     */
+    protected List<Analysis> createAnalysis(String prefix, ScoreMatrix optionMatrix, ScoringKernel[] optionKernels, ScoreMatrix criteriaMatrix) {
+        
+        List<Analysis> analysisList = new ArrayList<>();
+        
+        Analysis actualScore = new Analysis(prefix + "Best Actual Score");
+        Analysis weightedScore = new Analysis(prefix + "Best Weighted Score");
+        Analysis balancedScore = new Analysis(prefix + "Best Balanced Score");
+
+        analysisList.add(actualScore);
+        analysisList.add(weightedScore);
+        analysisList.add(balancedScore);
+
+        // Loop through the options to identify the top scores
+        for (int o=0; o<optionKernels.length; o++) {
+
+            String optionName = optionMatrix.getOptionName(o);
+            
+            actualScore.setIfWinner(optionName, optionKernels[o].getAverageScore());
+            weightedScore.setIfWinner(optionName, optionKernels[o].getAverageWeightedScore());
+            balancedScore.setIfWinner(optionName, optionKernels[o].getAverageBalancedScore());
 
-            // Loop through the scorecard.criteriaList
-            List<Criteria> criteriaList = scorecard.getCriteriaList();
-
-            for(Criteria criteria : criteriaList) {
-
-                Analysis criteriaScore = new Analysis("Best " + criteria.getName());
-
-                // Calculate criteria scores
-                List<Score> scoreList = calculateScoreValues(request, criteria.getScoreList());
+        }
 
-                // Find the top scores
-                for (Score score: scoreList) {
+        // Loop through the criteria to identify the top scores
+        for (int c=0; c<criteriaMatrix.getCriteriaCount(); c++) {
 
-                    criteriaScore.setIfWinner(score.getOption().getName(), score.getScore());
+            Analysis criteriaScore = new Analysis(prefix + "Best " + criteriaMatrix.getCriteriaName(c));
 
-                }
+            for (int i=0; i<criteriaMatrix.getCriteriaScoreCount(c); i++) {
 
-                analysisList.add(criteriaScore);
+                criteriaScore.setIfWinner(criteriaMatrix.getOptionName(criteriaMatrix.getCriteriaOption(c, i)), criteriaMatrix.getCriteriaScore(c, i));
 
             }
 
-            return ServiceResponseFactory.getSuccessResponse(analysisList,  new Long(analysisList.size()));
-         
+            analysisList.add(criteriaScore);
+
+        }
+        
+        return analysisList;
+        
+    }
+    
+    /**
+     * Creates a matrix of the individual scores of each evaluator for a scorecard.
+     * 
+     * @param scorecard the scorecard.
+     * @return the matrix.
+     */
+    protected ScoreMatrix createEvaluatorScoreMatrix(Scorecard scorecard) {
+        
+        List<Score> scores = new ArrayList<>();
+        
+        for (Criteria criteria : scorecard.getCriteriaList()) {
+            scores.addAll(criteria.getScoreList());
+        }
+        
+        return new ScoreMatrix(scorecard.getName(), scorecard.getOptionList(), scorecard.getCriteriaList(), scores);
+        
     }
     
     @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
@@ -450,41 +638,32 @@ public class EvaluatorServiceImpl extends BusinessService implements EvaluatorSe
                  
             if (nodeId.entityType.equals("GroupForEval")) {
                
-                EvalGroup evalGroup = evalGroupDao.findOne(entityId);
                 Scorecard newScorecard = null;
                 
                 if (allowAdd)
                     newScorecard = new Scorecard();
                 
-                evalTreeNode = new EvalTreeNode(evalGroup.getScorecardList(), "SC", newScorecard, allowAdd);
+                evalTreeNode = new EvalTreeNode(scorecardDao.findByGroup(entityId), "SC", newScorecard, allowAdd);
+                evalTreeNode.setChildCounter(createOptionCounter());
                 
             } else if (nodeId.entityType.equals("Scorecard")) {
                 
-                Scorecard scorecard = scorecardDao.findOne(entityId);
-                
                 Option newOption = null;
                 
                 if (allowAdd) {
+                    Scorecard scorecard = scorecardDao.findOne(entityId);
                     newOption = new Option();
                     // Set master
                     newOption.setScorecardId(scorecard.getId());
                     newOption.setMaster(scorecard);
                 }                
                 
-                evalTreeNode = new EvalTreeNode(scorecard.getOptionList(), "OP", newOption, allowAdd);                
+                evalTreeNode = new EvalTreeNode(optionDao.findByScorecard(entityId), "OP", newOption, allowAdd);                
+                evalTreeNode.setChildCounter(createScoreCounter(username));
             
             } else if (nodeId.entityType.equals("Option")) {
                 
-                Option option = optionDao.findOne(entityId);                
-                List<Score> scores = new ArrayList<>();
-                
-                // NB May be more efficient to do a database query than determine via ORM
-                for (Score score : option.getScoreList()) {
-                    
-                    if (score.getEvaluator().getUsername().equals(username))
-                        scores.add(score);
-                    
-                }
+                List<Score> scores = scoreDao.findByOptionForEvaluator(entityId, username);
                 
                 evalTreeNode = new EvalTreeNode(scores, "S_", null, false);                
             
@@ -500,10 +679,73 @@ public class EvaluatorServiceImpl extends BusinessService implements EvaluatorSe
 
             List<GroupForEval> evalGroups = groupForEvalDao.findAllForEvaluator(username);
             evalTreeNode = new EvalTreeNode(evalGroups, "EG", newEvalGroup, allowAdd);
+            evalTreeNode.setChildCounter(createScorecardCounter());
         }
         
         return ServiceResponseFactory.getTreeNodeResponse(evalTreeNode);
     }
+    
+    /**
+     * Creates a child counter for group nodes, which counts the scorecards of each group in a single query.
+     * 
+     * @return the child counter.
+     */
+    protected TreeNode.ChildCounter createScorecardCounter() {
+        
+        return new TreeNode.ChildCounter() {
+            @Override
+            public Map<Object, Long> countChildren(List<Object> entityIds) {
+                return toChildCounts(scorecardDao.countByGroup((List<Integer>)(Object)entityIds));
+            }
+        };
+        
+    }
+    
+    /**
+     * Creates a child counter for scorecard nodes, which counts the options of each scorecard in a single query.
+     * 
+     * @return the child counter.
+     */
+    protected TreeNode.ChildCounter createOptionCounter() {
+        
+        return new TreeNode.ChildCounter() {
+            @Override
+            public Map<Object, Long> countChildren(List<Object> entityIds) {
+                return toChildCounts(optionDao.countByScorecard((List<Integer>)(Object)entityIds));
+            }
+        };
+        
+    }
+    
+    /**
+     * Creates a child counter for option nodes, which counts the scores of each option for an evaluator
+     * in a single query, as only the evaluator's scores are shown.
+     * 
+     * @param username the evaluator's username.
+     * @return the child counter.
+     */
+    protected TreeNode.ChildCounter createScoreCounter(final String username) {
+        
+        return new TreeNode.ChildCounter() {
+            @Override
+            public Map<Object, Long> countChildren(List<Object> entityIds) {
+                return toChildCounts(scoreDao.countByOptionForEvaluator((List<Integer>)(Object)entityIds, username));
+            }
+        };
+        
+    }
+    
+    private static Map<Object, Long> toChildCounts(List<Object[]> rows) {
+        
+        Map<Object, Long> childCounts = new HashMap<>();
+        
+        for (Object[] row : rows) {
+            childCounts.put(row[0], ((Number)row[1]).longValue());
+        }
+        
+        return childCounts;
+        
+    }
         
     
     
@@ -520,30 +762,46 @@ public class EvaluatorServiceImpl extends BusinessService implements EvaluatorSe
         if (scorecard.getCriteriaList().isEmpty() || scorecard.getOptionList().isEmpty())
             return ServiceResponseFactory.getSuccessResponse(chartSeriesList);
         
-        // Loop through the scorecard.criteriaList
-         List<Criteria> criteriaList = scorecard.getCriteriaList();
-         
-         for(Criteria criteria : criteriaList) {
-             
-             ChartSeries criteriaSeries = new ChartSeries(criteria.getName());
-             
-             // Calculate criteria scores
-             List<Score> scoreList = calculateScoreValues(request, criteria.getScoreList());
-             
-             // Find the top scores
-             for (Score score: scoreList) {
-                 
-                 String optionName = score.getOption().getName();
-                 
-                 criteriaSeries.addOptionScore(optionName + "_Abs", score.getScore());
-                 criteriaSeries.addOptionScore(optionName + "_Wgt", score.getWeightedScore());
-                 criteriaSeries.addOptionScore(optionName + "_Bal", score.getBalancedScore());
-                  
-             }
+        // Use the cached series if the scorecard is unchanged
+        Integer evaluatorId = request.getData().getInt("evaluatorId", -1);
+        String cacheKey = analysisCache.createKey("chart", scorecard, evaluatorId);
+        List<ChartSeries> cachedList = (List<ChartSeries>) analysisCache.get(cacheKey);
+        
+        if (cachedList != null)
+            return ServiceResponseFactory.getSuccessResponse(cachedList);
+        
+        // Consolidate the scores on the database, unless scores are required for each evaluator
+        ScoreMatrix criteriaMatrix;
+        
+        if (evaluatorId == -2)
+            criteriaMatrix = createEvaluatorScoreMatrix(scorecard);
+        else
+            criteriaMatrix = new ScoreMatrix(scorecard.getName(), scorecard.getOptionList(), scorecard.getCriteriaList(), 
+                    findConsolidatedScores(scorecard.getOptionList(), evaluatorId));
+        
+        // Calculate the criteria scores in parallel
+        ScoringKernel[] criteriaKernels = scoreAnalyser.analyseCriteria(Collections.singletonList(criteriaMatrix))[0];
+        
+        for (int c=0; c<criteriaKernels.length; c++) {
              
-             chartSeriesList.add(criteriaSeries);
+            ChartSeries criteriaSeries = new ChartSeries(criteriaMatrix.getCriteriaName(c));
+            ScoringKernel kernel = criteriaKernels[c];
+
+            for (int i=0; i<criteriaMatrix.getCriteriaScoreCount(c); i++) {
+
+                String optionName = criteriaMatrix.getOptionName(criteriaMatrix.getCriteriaOption(c, i));
+
+                criteriaSeries.addOptionScore(optionName + "_Abs", criteriaMatrix.getCriteriaScore(c, i));
+                criteriaSeries.addOptionScore(optionName + "_Wgt", kernel.getWeightedScore(i));
+                criteriaSeries.addOptionScore(optionName + "_Bal", kernel.getBalancedScore(i));
+
+            }
+
+            chartSeriesList.add(criteriaSeries);
              
-         }
+        }
+        
+        analysisCache.put(cacheKey, chartSeriesList);
         
         return ServiceResponseFactory.getSuccessResponse(chartSeriesList);      
         
@@ -566,6 +824,10 @@ public class EvaluatorServiceImpl extends BusinessService implements EvaluatorSe
             newList = calculateCriteriaTplValues(entities);
         }
        
+       // Options and scores may be retrieved in large pages so are streamed by the controller
+       if (entity instanceof Option || entity instanceof Score)
+           return ServiceResponseFactory.getStreamedResponse(newList, totalCount);
+        
        return ServiceResponseFactory.getSuccessResponse(newList, totalCount);
            
        
@@ -622,11 +884,100 @@ public class EvaluatorServiceImpl extends BusinessService implements EvaluatorSe
      protected <T extends MappedBusinessEntity, ID extends Serializable> List<T> calculateOptionScoreValues(ServiceRequest<ID> request, List<T> entities) {
         logger.trace("calculateOptionScoreValues");
         
-        Integer totalScore = 0;
-        Integer totalWeightedScore = 0;
-        Integer totalBalancedScore = 0;
-        
         Integer evaluatorId = request.getData().getInt("evaluatorId", -1);               
+        List<Option> options = (List<Option>)(Object)entities;
+        
+        // Use the cached option scores if the options are of a single scorecard that is unchanged
+        Scorecard scorecard = findCommonScorecard(options);
+        String cacheKey = null;
+        Map<Integer, int[]> cachedScores = null;
+        
+        if (scorecard != null) {
+            cacheKey = analysisCache.createKey("options", scorecard, evaluatorId);
+            cachedScores = (Map<Integer, int[]>) analysisCache.get(cacheKey);
+        }
+        
+        if (cachedScores != null && isCached(options, cachedScores)) {
+            
+            for (Option option : options) {
+                
+                int[] values = cachedScores.get(option.getId());
+                option.setScore(values[0]);
+                option.setWeightedScore(values[1]);
+                option.setBalancedScore(values[2]);
+            }
+            
+            return calculateRelativeOptionScores(entities);
+        }
+        
+        List<Score> consolidatedScores = findConsolidatedScores(options, evaluatorId);
+        
+        calculateOptionScoreValues(entities, consolidatedScores);
+        
+        if (cacheKey != null) {
+            
+            Map<Integer, int[]> optionScores = cachedScores == null ? new HashMap<Integer, int[]>() : new HashMap<>(cachedScores);
+            
+            for (Option option : options) {
+                optionScores.put(option.getId(), new int[] {option.getScore(), option.getWeightedScore(), option.getBalancedScore()});
+            }
+            
+            analysisCache.put(cacheKey, optionScores);
+        }
+        
+        return entities;
+        
+     }
+     
+    /**
+     * Finds the scorecard of a list of options if they all belong to the same scorecard.
+     * 
+     * @param options the options.
+     * @return the scorecard, or null if there are no options or they belong to different scorecards.
+     */
+    protected Scorecard findCommonScorecard(List<Option> options) {
+        
+        if (options.isEmpty())
+            return null;
+        
+        Integer scorecardId = options.get(0).getScorecardId();
+        
+        for (Option option : options) {
+            if (scorecardId == null || !scorecardId.equals(option.getScorecardId()))
+                return null;
+        }
+        
+        return scorecardDao.findOne(scorecardId);
+        
+    }
+    
+    private boolean isCached(List<Option> options, Map<Integer, int[]> cachedScores) {
+        
+        for (Option option : options) {
+            if (!cachedScores.containsKey(option.getId()))
+                return false;
+        }
+        
+        return true;
+    }
+     
+     protected <T extends MappedBusinessEntity> List<T> calculateOptionScoreValues(List<T> entities, List<Score> consolidatedScores) {
+        logger.trace("calculateOptionScoreValues");
+        
+        // Group the consolidated scores by option
+        Map<Integer, List<Score>> optionScores = new LinkedHashMap<>();
+        
+        for (Score score : consolidatedScores) {
+            
+            List<Score> scoreList = optionScores.get(score.getOption().getId());
+            
+            if (scoreList == null) {
+                scoreList = new ArrayList<>();
+                optionScores.put(score.getOption().getId(), scoreList);
+            }
+            
+            scoreList.add(score);
+        }
         
         Option option;
         
@@ -634,11 +985,32 @@ public class EvaluatorServiceImpl extends BusinessService implements EvaluatorSe
         for(MappedBusinessEntity entity: entities) {
             
             option = (Option)entity;
-            List<Score> scoreList = option.getScoreList();
+            List<Score> consolidatedList = optionScores.get(option.getId());
             
-            List<Score> consolidatedList = consolidateScores(scoreList, evaluatorId);
+            if (consolidatedList == null)
+                consolidatedList = new ArrayList<>();
+            
+            calculateScores(consolidatedList, option);
+           
+        }
+        
+        return calculateRelativeOptionScores(entities);
+        
+     }
+     
+     protected <T extends MappedBusinessEntity> List<T> calculateRelativeOptionScores(List<T> entities) {
+        logger.trace("calculateRelativeOptionScores");
+        
+        int totalScore = 0;
+        int totalWeightedScore = 0;
+        int totalBalancedScore = 0;
+        
+        Option option;
+        
+        // Loop through options to calculate totals
+        for(MappedBusinessEntity entity: entities) {
             
-            int scoreCount = calculateScores(consolidatedList, option);
+            option = (Option)entity;
             
             totalScore += option.getScore();
             totalWeightedScore += option.getWeightedScore();
@@ -651,20 +1023,9 @@ public class EvaluatorServiceImpl extends BusinessService implements EvaluatorSe
            
            option = (Option)entity;
            
-           if (option.getScore() > 0 && totalScore > 0)
-                option.setRelativeScore((100*option.getScore())/totalScore);
-           else
-                option.setRelativeScore(0);
-           
-           if (option.getWeightedScore() > 0 && totalWeightedScore > 0)
-                option.setRelativeWeightedScore((100*option.getWeightedScore())/totalWeightedScore); 
-           else
-                option.setRelativeWeightedScore(0);
-           
-           if (option.getBalancedScore() > 0 && totalBalancedScore > 0)
-                option.setRelativeBalancedScore((100*option.getBalancedScore())/totalBalancedScore); 
-           else
-                option.setRelativeBalancedScore(0);
+           option.setRelativeScore(ScoringKernel.getRelative(option.getScore(), totalScore));
+           option.setRelativeWeightedScore(ScoringKernel.getRelative(option.getWeightedScore(), totalWeightedScore)); 
+           option.setRelativeBalancedScore(ScoringKernel.getRelative(option.getBalancedScore(), totalBalancedScore)); 
            
         }
         
@@ -734,6 +1095,45 @@ public class EvaluatorServiceImpl extends BusinessService implements EvaluatorSe
 
      }
      
+    /**
+     * Finds the scores of a list of options consolidated by option and criteria, which average the
+     * non-zero scores across all evaluators, or only those of a single evaluator if specified.
+     * The scores of all evaluators are read from the score summaries maintained as scores are saved, whereas
+     * those of a single evaluator are aggregated by the database.
+     * The consolidated scores are ordered by criteria and option name.
+     * 
+     * @param options the options.
+     * @param evaluatorId the evaluator identifier, or zero or less for all evaluators.
+     * @return the consolidated scores.
+     */
+    protected List<Score> findConsolidatedScores(List<Option> options, Integer evaluatorId) {
+        logger.trace("findConsolidatedScores"); 
+        
+        List<Score> consolidatedScores = new ArrayList<>();
+        List<Integer> optionIds = new ArrayList<>();
+        
+        for (Option option : options) {
+            optionIds.add(option.getId());
+        }
+        
+        if (optionIds.isEmpty())
+            return consolidatedScores;
+        
+        List<Object[]> rows;
+        
+        if (evaluatorId > 0)
+            rows = scoreDao.sumScoresByOption(optionIds, evaluatorId);
+        else
+            rows = scoreDao.findSummariesByOption(optionIds);
+        
+        for (Object[] row : rows) {
+            consolidatedScores.add(createConsolidatedScore((Option)row[0], (Criteria)row[1], ((Number)row[2]).intValue(), ((Number)row[3]).intValue()));
+        }
+        
+        return consolidatedScores;
+        
+    }
+    
     protected Score createConsolidatedScore(Option option, Criteria criteria, int totalScore, int count) {
         
         Score score = new Score();
@@ -768,110 +1168,49 @@ public class EvaluatorServiceImpl extends BusinessService implements EvaluatorSe
      
     }
      
+     /**
+     * Calculates the derived values of a list of scores via a {@link ScoringKernel}.
+     * If an option is specified then its average scores are set, otherwise the weighted, balanced and relative
+     * values of each score are set.
+     * 
+     * @param scoreList the scores.
+     * @param option the option the scores are for, or null.
+     * @return the number of scores.
+     */
      protected <T extends MappedBusinessEntity> int calculateScores(List<Score> scoreList, Option option) {
         logger.trace("calculateScores");
         
-        Integer totalScore = 0;
-        Integer totalWeightedScore = 0;
-        Integer totalBalancedScore = 0;
-        
-        Integer totalRelativeScore = 0;
-        Integer totalRelativeWeightedScore = 0;
-        Integer totalRelativeBalancedScore = 0;
-        
-        Integer score;
-        Integer weight;
-        Integer relativeScore;
-        Integer weightedScore;
-        Integer relativeWeightedScore;
-        Integer balancedScore;
-        Integer relativeBalancedScore;
-        
-        double scoreD;
-        double bScore;
-        double midScore = Math.log(50);
-        
-        int scoreCount = 0;
+        int scoreCount = scoreList.size();
+        int[] scores = new int[scoreCount];
+        int[] weights = new int[scoreCount];
         
-        // Loop through to set derived values
-        for(Score scoreEntity: scoreList) {
-            
-            scoreCount += 1;
-            score  = scoreEntity.getScore();
+        for (int i=0; i<scoreCount; i++) {
             
-            if (score > 0) {
+            Score scoreEntity = scoreList.get(i);
+            scores[i] = scoreEntity.getScore();
             
-                    weight = scoreEntity.getCriteria().getWeight();
-                    if (weight > 0 )
-                        weightedScore = score * weight / 100;
-                    else
-                        weightedScore = 0;
-
-                    scoreD = score.doubleValue();
-
-                    if (scoreD > 50) {
-                        bScore = midScore + Math.log(scoreD - 50);
-                    } else {
-                        bScore = Math.log(scoreD);
-                    }
-
-                    balancedScore = (int) ((100*bScore) / ( 2*midScore));
-
-                    totalScore += score;
-                    totalWeightedScore += weightedScore;
-                    totalBalancedScore += balancedScore;
-
-                    scoreEntity.setWeightedScore(weightedScore);
-                    scoreEntity.setBalancedScore(balancedScore);
-            } else {
-                scoreEntity.setWeightedScore(0);
-                scoreEntity.setBalancedScore(0);
-            }
-        
+            if (scores[i] > 0)
+                weights[i] = scoreEntity.getCriteria().getWeight();
         }
+        
+        ScoringKernel kernel = new ScoringKernel(scores, weights);
                 
         if (option != null) {
-            if (totalScore > 0 && scoreCount > 0) {
-                option.setScore(totalScore / scoreCount);
-                
-                if (totalWeightedScore > 0)
-                    option.setWeightedScore(totalWeightedScore / scoreCount);
-                else 
-                     option.setWeightedScore(0);
-                
-                option.setBalancedScore(totalBalancedScore / scoreCount);
-                
-            } else {
-                option.setScore(0);
-                option.setWeightedScore(0);
-                option.setBalancedScore(0);
-            }
+            
+            option.setScore(kernel.getAverageScore());
+            option.setWeightedScore(kernel.getAverageWeightedScore());
+            option.setBalancedScore(kernel.getAverageBalancedScore());
+            
         } else {
             
-            // Loop through again to set relative values
-            for(Score scoreEntity: scoreList) {
+            for (int i=0; i<scoreCount; i++) {
                 
-                if (scoreEntity.getScore() > 0) {
-
-                    relativeScore = (100*scoreEntity.getScore())/totalScore;
-                    weightedScore = scoreEntity.getWeightedScore();
-                    
-                    if (weightedScore > 0 && totalWeightedScore > 0)
-                        relativeWeightedScore = (100*weightedScore)/totalWeightedScore;
-                    else
-                        relativeWeightedScore = 0;
-                    
-                    relativeBalancedScore = (100*scoreEntity.getBalancedScore())/totalBalancedScore;
-
-                    scoreEntity.setRelativeScore(relativeScore);    
-                    scoreEntity.setRelativeWeightedScore(relativeWeightedScore);    
-                    scoreEntity.setRelativeBalancedScore(relativeBalancedScore);    
-                } else {
-                    scoreEntity.setRelativeScore(0);    
-                    scoreEntity.setRelativeWeightedScore(0);    
-                    scoreEntity.setRelativeBalancedScore(0);    
-                }
-
+                Score scoreEntity = scoreList.get(i);
+                scoreEntity.setWeightedScore(kernel.getWeightedScore(i));
+                scoreEntity.setBalancedScore(kernel.getBalancedScore(i));
+                scoreEntity.setRelativeScore(kernel.getRelativeScore(i));    
+                scoreEntity.setRelativeWeightedScore(kernel.getRelativeWeightedScore(i));    
+                scoreEntity.setRelativeBalancedScore(kernel.getRelativeBalancedScore(i));    
             }
         }
         
@@ -1037,6 +1376,8 @@ public class EvaluatorServiceImpl extends BusinessService implements EvaluatorSe
             return doEvalGroupOperations(request, action, (EvalGroup)revEntity);  
         else if (revEntity instanceof ScorecardTpl)
             return doScorecardTplOperations(request, action, (ScorecardTpl)revEntity);  
+        else if (revEntity instanceof Score)
+            return doScoreOperations(request, action, (Score)revEntity);  
         
         return null;
        
@@ -1045,22 +1386,17 @@ public class EvaluatorServiceImpl extends BusinessService implements EvaluatorSe
     protected String doOptionOperations(ServiceRequest request, String action, Option revEntity) {
         logger.trace("doOptionOperations");
         
+        analysisCache.invalidate(revEntity.getScorecardId());
+        
         if (action.equals(MappedBusinessEntity.REC_SAVE)) {
             
             if (request.getEntityId() == null) {
                 
-                // Add criteria scores to option
-                Scorecard scorecard = revEntity.getScorecard();              
-                List<Criteria> criteriaList = scorecard.getCriteriaList();
-                EvalGroup evalGroup = scorecard.getEvalGroup();
-                List<Evaluator> evaluatorList = evalGroup.getEvaluatorList();
-                
-                for(Criteria criteria: criteriaList) {                    
-                    for(Evaluator evaluator: evaluatorList) {                        
-                        createScore(revEntity, criteria, evaluator);                        
-                    }
-                     
-                }
+                // Add criteria scores to option for each evaluator
+                int count = scoreDao.createScoresForOption(revEntity.getId());
+                logger.debug("doOptionOperations: created " + count + " scores");
+                scoreDao.updateSummariesForOption(revEntity.getId());
+                EntityMetadata.invalidateCounts(Score.class);
             
             } else {
                 
@@ -1084,22 +1420,17 @@ public class EvaluatorServiceImpl extends BusinessService implements EvaluatorSe
     protected String doCriteriaOperations(ServiceRequest request, String action, Criteria revEntity) {
         logger.trace("doCriteriaOperations");
         
+        analysisCache.invalidate(revEntity.getScorecard().getId());
+        
         if (action.equals(MappedBusinessEntity.REC_SAVE)) {
             
             if (request.getEntityId() == null) {
                 
-                // Add scores to options
-                Scorecard scorecard = revEntity.getScorecard();              
-                List<Option> optionList = scorecard.getOptionList();
-                EvalGroup evalGroup = scorecard.getEvalGroup();
-                List<Evaluator> evaluatorList = evalGroup.getEvaluatorList();
-                
-                for(Option option: optionList) {                    
-                    for(Evaluator evaluator: evaluatorList) {                        
-                        createScore(option, revEntity, evaluator);                        
-                    }
-                     
-                }
+                // Add scores to options for each evaluator
+                int count = scoreDao.createScoresForCriteria(revEntity.getId());
+                logger.debug("doCriteriaOperations: created " + count + " scores");
+                scoreDao.updateSummariesForCriteria(revEntity.getId());
+                EntityMetadata.invalidateCounts(Score.class);
             
             } else {
                 
@@ -1170,26 +1501,18 @@ public class EvaluatorServiceImpl extends BusinessService implements EvaluatorSe
     protected String doEvaluatorOperations(ServiceRequest request, String action, Evaluator revEntity) {
         logger.trace("doEvaluatorOperations");
         
+        // Affects the scores of all scorecards in the group
+        analysisCache.invalidateGroup(revEntity.getEvalGroup().getId());
+        
         if (action.equals(MappedBusinessEntity.REC_SAVE)) {
             
             if (request.getEntityId() == null) {
                 
                 // Add scores to evaluator for all scorecards in group
-                EvalGroup evalGroup = revEntity.getEvalGroup();
-                List<Scorecard> scorecardList = evalGroup.getScorecardList();
-                
-                for(Scorecard scorecard: scorecardList) {
-                    
-                    List<Option> optionList = scorecard.getOptionList();
-                    List<Criteria> criteriaList = scorecard.getCriteriaList();
-                    
-                    for(Option option: optionList) {                    
-                        for(Criteria criteria: criteriaList) {                        
-                            createScore(option, criteria, revEntity);                        
-                        }
-                    }
-
-                }
+                int count = scoreDao.createScoresForEvaluator(revEntity.getId());
+                logger.debug("doEvaluatorOperations: created " + count + " scores");
+                scoreDao.addSummariesForEvaluator(revEntity.getId());
+                EntityMetadata.invalidateCounts(Score.class);
             
             } else {
                 
@@ -1202,8 +1525,9 @@ public class EvaluatorServiceImpl extends BusinessService implements EvaluatorSe
                 throw new ServiceResponseException(ServiceResponseFactory.getWarningFailResponse("REMOVE_CONF", messageHelper.getMessage("operation.score.remove_confirmation")));       
             }
             
-            // Ensure the scores are loaded so that they are removed
+            // Ensure the scores are loaded so that they are removed, and remove them from the summaries
             revEntity.getScoreList();
+            scoreDao.subtractSummariesForEvaluator(revEntity.getId());
         }
         
         return null;
@@ -1273,18 +1597,36 @@ public class EvaluatorServiceImpl extends BusinessService implements EvaluatorSe
        
     }
     
-    protected void createScore(Option option, Criteria criteria, Evaluator evaluator) {
-        logger.trace("createScore");
-
-        Score score = new Score();
-
-        score.setOption(option);
-        score.setCriteria(criteria);
-        score.setEvaluator(evaluator);
-        score.setScore(0);  // Default score to zero and ignore in totals for all
-
-        executeSave(scoreDao, score);
-
+    protected String doScoreOperations(ServiceRequest request, String action, Score revEntity) {
+        logger.trace("doScoreOperations");
+        
+        // Scores are not mastered by the scorecard, so its version does not reflect the change
+        // The generation is incremented once this transaction commits, so all servers then see the change
+        analysisCache.invalidate(revEntity.getOption().getScorecardId());
+        
+        // Apply the change of score to the summary of the option and criteria, rather than recalculating it from 
+        // the other evaluators' scores, as reading these would lock them against concurrent saves
+        if (action.equals(MappedBusinessEntity.REC_SAVE)) {
+            
+            Integer optionId = revEntity.getOption().getId();
+            Integer criteriaId = revEntity.getCriteria().getId();
+            int value = revEntity.getScore() == null ? 0 : revEntity.getScore();
+            
+            if (!revEntity.hasBaseline()) {
+                scoreDao.addToSummary(optionId, criteriaId, value > 0 ? 1 : 0, value);
+            
+            } else {
+                
+                Integer previous = (Integer)revEntity.getBaselineValue("score");
+                int previousValue = previous == null ? 0 : previous;
+                
+                if (value != previousValue)
+                    scoreDao.adjustSummary(optionId, criteriaId, 0, (value > 0 ? 1 : 0) - (previousValue > 0 ? 1 : 0), value - previousValue);
+            }
+        }
+        
+        return null;
+        
     }
 
 
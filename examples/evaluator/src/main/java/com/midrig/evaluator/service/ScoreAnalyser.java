@@ -0,0 +1,140 @@
+package com.midrig.evaluator.service;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A ScoreAnalyser calculates the scores of the criteria or options of one or more {@link ScoreMatrix} in
+ * parallel via fork/join tasks.
+ * The results are returned by matrix and then by criteria or option index, so they are ordered as the matrices
+ * regardless of the order in which the tasks complete.
+ */
+public class ScoreAnalyser {
+
+    /**
+     * The number of kernels below which a task calculates them rather than forking further tasks.
+     */
+    final private static int SEQUENTIAL_THRESHOLD = 8;
+
+    final private ForkJoinPool pool;
+
+    /**
+     * Creates an analyser with its own pool of threads, which should be released via {@link #shutdown}.
+     *
+     * @param parallelism the number of threads, or zero or less for the number of processors.
+     */
+    public ScoreAnalyser(int parallelism) {
+
+        pool = parallelism > 0 ? new ForkJoinPool(parallelism) : new ForkJoinPool();
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Shuts down the pool of threads, after which no further analysis can be performed.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Calculates the scores of each criteria of the matrices.
+     *
+     * @param matrices the matrices.
+     * @return the kernel of each criteria by matrix.
+     */
+    public ScoringKernel[][] analyseCriteria(List<ScoreMatrix> matrices) {
+        return analyse(matrices, true);
+    }
+
+    /**
+     * Calculates the scores of each option of the matrices.
+     *
+     * @param matrices the matrices.
+     * @return the kernel of each option by matrix.
+     */
+    public ScoringKernel[][] analyseOptions(List<ScoreMatrix> matrices) {
+        return analyse(matrices, false);
+    }
+
+    private ScoringKernel[][] analyse(List<ScoreMatrix> matrices, boolean isByCriteria) {
+
+        ScoringKernel[][] results = new ScoringKernel[matrices.size()][];
+        int count = 0;
+
+        for (int m=0; m<results.length; m++) {
+            ScoreMatrix matrix = matrices.get(m);
+            results[m] = new ScoringKernel[isByCriteria ? matrix.getCriteriaCount() : matrix.getOptionCount()];
+            count += results[m].length;
+        }
+
+        // Flatten the items of all matrices so that the work is divided evenly
+        int[] matrixIndexes = new int[count];
+        int[] itemIndexes = new int[count];
+        int i = 0;
+
+        for (int m=0; m<results.length; m++) {
+            for (int item=0; item<results[m].length; item++) {
+                matrixIndexes[i] = m;
+                itemIndexes[i++] = item;
+            }
+        }
+
+        KernelTask task = new KernelTask(matrices, isByCriteria, matrixIndexes, itemIndexes, results, 0, count);
+
+        if (count <= SEQUENTIAL_THRESHOLD)
+            task.compute();
+        else
+            pool.invoke(task);
+
+        return results;
+    }
+
+    private static class KernelTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final private List<ScoreMatrix> matrices;
+        final private boolean isByCriteria;
+        final private int[] matrixIndexes;
+        final private int[] itemIndexes;
+        final private ScoringKernel[][] results;
+        final private int from;
+        final private int to;
+
+        KernelTask(List<ScoreMatrix> matrices, boolean isByCriteria, int[] matrixIndexes, int[] itemIndexes,
+                ScoringKernel[][] results, int from, int to) {
+
+            this.matrices = matrices;
+            this.isByCriteria = isByCriteria;
+            this.matrixIndexes = matrixIndexes;
+            this.itemIndexes = itemIndexes;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from > SEQUENTIAL_THRESHOLD) {
+
+                int mid = (from + to) >>> 1;
+                invokeAll(new KernelTask(matrices, isByCriteria, matrixIndexes, itemIndexes, results, from, mid),
+                          new KernelTask(matrices, isByCriteria, matrixIndexes, itemIndexes, results, mid, to));
+                return;
+            }
+
+            for (int i=from; i<to; i++) {
+
+                ScoreMatrix matrix = matrices.get(matrixIndexes[i]);
+                int item = itemIndexes[i];
+
+                results[matrixIndexes[i]][item] = isByCriteria ? matrix.createCriteriaKernel(item) : matrix.createOptionKernel(item);
+            }
+        }
+    }
+
+}
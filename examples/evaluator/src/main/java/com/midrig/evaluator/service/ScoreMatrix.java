@@ -0,0 +1,199 @@
+package com.midrig.evaluator.service;
+
+import com.midrig.evaluator.domain.Criteria;
+import com.midrig.evaluator.domain.Option;
+import com.midrig.evaluator.domain.Score;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A ScoreMatrix holds the scores of a scorecard by criteria and by option, detached from the persistence context.
+ * It is populated from the entities on the request thread, after which it may be analysed on any thread, e.g.
+ * via a {@link ScoreAnalyser}.  Scores are held in the order given, so that the analysis is deterministic.
+ */
+public class ScoreMatrix {
+
+    final private String name;
+    final private String[] optionNames;
+    final private String[] criteriaNames;
+    final private int[] criteriaWeights;
+
+    // The option index and score of each score of a criteria
+    final private int[][] criteriaOptions;
+    final private int[][] criteriaScores;
+
+    // The criteria index and score of each score of an option
+    final private int[][] optionCriteria;
+    final private int[][] optionScores;
+
+    /**
+     * Creates a matrix of scores.
+     * Scores of options or criteria that are not listed are ignored.
+     *
+     * @param name the name of the matrix, e.g. the scorecard name.
+     * @param options the options.
+     * @param criteriaList the criteria.
+     * @param scores the scores, e.g. as consolidated for each option and criteria.
+     */
+    public ScoreMatrix(String name, List<Option> options, List<Criteria> criteriaList, List<Score> scores) {
+
+        this.name = name;
+
+        optionNames = new String[options.size()];
+        criteriaNames = new String[criteriaList.size()];
+        criteriaWeights = new int[criteriaList.size()];
+
+        Map<Integer, Integer> optionIndexes = new HashMap<>();
+        Map<Integer, Integer> criteriaIndexes = new HashMap<>();
+
+        for (int o=0; o<optionNames.length; o++) {
+            Option option = options.get(o);
+            optionNames[o] = option.getName();
+            optionIndexes.put(option.getId(), o);
+        }
+
+        for (int c=0; c<criteriaNames.length; c++) {
+            Criteria criteria = criteriaList.get(c);
+            criteriaNames[c] = criteria.getName();
+            criteriaWeights[c] = criteria.getWeight();
+            criteriaIndexes.put(criteria.getId(), c);
+        }
+
+        // Resolve the indexes of each score and count the scores of each option and criteria
+        int[] scoreOptions = new int[scores.size()];
+        int[] scoreCriteria = new int[scores.size()];
+        int[] optionCounts = new int[optionNames.length];
+        int[] criteriaCounts = new int[criteriaNames.length];
+
+        for (int i=0; i<scores.size(); i++) {
+
+            Score score = scores.get(i);
+            Integer o = optionIndexes.get(score.getOption().getId());
+            Integer c = criteriaIndexes.get(score.getCriteria().getId());
+
+            if (o == null || c == null) {
+                scoreOptions[i] = -1;
+                continue;
+            }
+
+            scoreOptions[i] = o;
+            scoreCriteria[i] = c;
+            optionCounts[o]++;
+            criteriaCounts[c]++;
+        }
+
+        criteriaOptions = new int[criteriaNames.length][];
+        criteriaScores = new int[criteriaNames.length][];
+        optionCriteria = new int[optionNames.length][];
+        optionScores = new int[optionNames.length][];
+
+        for (int c=0; c<criteriaNames.length; c++) {
+            criteriaOptions[c] = new int[criteriaCounts[c]];
+            criteriaScores[c] = new int[criteriaCounts[c]];
+            criteriaCounts[c] = 0;
+        }
+
+        for (int o=0; o<optionNames.length; o++) {
+            optionCriteria[o] = new int[optionCounts[o]];
+            optionScores[o] = new int[optionCounts[o]];
+            optionCounts[o] = 0;
+        }
+
+        for (int i=0; i<scores.size(); i++) {
+
+            int o = scoreOptions[i];
+
+            if (o < 0)
+                continue;
+
+            int c = scoreCriteria[i];
+            int score = scores.get(i).getScore();
+
+            criteriaOptions[c][criteriaCounts[c]] = o;
+            criteriaScores[c][criteriaCounts[c]++] = score;
+            optionCriteria[o][optionCounts[o]] = c;
+            optionScores[o][optionCounts[o]++] = score;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getOptionCount() {
+        return optionNames.length;
+    }
+
+    public String getOptionName(int option) {
+        return optionNames[option];
+    }
+
+    public int getCriteriaCount() {
+        return criteriaNames.length;
+    }
+
+    public String getCriteriaName(int criteria) {
+        return criteriaNames[criteria];
+    }
+
+    /**
+     * Gets the number of scores of a criteria.
+     *
+     * @param criteria the criteria index.
+     * @return the number of scores.
+     */
+    public int getCriteriaScoreCount(int criteria) {
+        return criteriaScores[criteria].length;
+    }
+
+    /**
+     * Gets the option index of a score of a criteria.
+     *
+     * @param criteria the criteria index.
+     * @param index the index of the score within the criteria.
+     * @return the option index.
+     */
+    public int getCriteriaOption(int criteria, int index) {
+        return criteriaOptions[criteria][index];
+    }
+
+    public int getCriteriaScore(int criteria, int index) {
+        return criteriaScores[criteria][index];
+    }
+
+    /**
+     * Creates a kernel that calculates the scores of a criteria, ordered as for {@link #getCriteriaScore}.
+     *
+     * @param criteria the criteria index.
+     * @return the kernel.
+     */
+    public ScoringKernel createCriteriaKernel(int criteria) {
+
+        int[] weights = new int[criteriaScores[criteria].length];
+
+        for (int i=0; i<weights.length; i++) {
+            weights[i] = criteriaWeights[criteria];
+        }
+
+        return new ScoringKernel(criteriaScores[criteria], weights);
+    }
+
+    /**
+     * Creates a kernel that calculates the scores of an option across its criteria.
+     *
+     * @param option the option index.
+     * @return the kernel.
+     */
+    public ScoringKernel createOptionKernel(int option) {
+
+        int[] weights = new int[optionScores[option].length];
+
+        for (int i=0; i<weights.length; i++) {
+            weights[i] = criteriaWeights[optionCriteria[option][i]];
+        }
+
+        return new ScoringKernel(optionScores[option], weights);
+    }
+
+}
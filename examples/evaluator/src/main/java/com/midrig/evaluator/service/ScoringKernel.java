@@ -0,0 +1,157 @@
+package com.midrig.evaluator.service;
+
+/**
+ * A ScoringKernel calculates the derived values of a list of scores on primitive columns.
+ * The weighted and balanced score of each score are calculated along with their totals, and the averages and
+ * relative values are derived from these on request, so that entities need only be updated for the values
+ * that are serialised.
+ * <p>
+ * Zero scores are not scored, so they contribute nothing to the totals, but they are included in the count
+ * used to calculate the averages.
+ */
+public class ScoringKernel {
+
+    final private static int MAX_TABLE_SCORE = 100;
+
+    /**
+     * The balanced score of each score up to {@link #MAX_TABLE_SCORE}, which are those a criteria is scored with.
+     */
+    final private static int[] BALANCED_SCORES = new int[MAX_TABLE_SCORE + 1];
+
+    static {
+        for (int score=0; score<=MAX_TABLE_SCORE; score++) {
+            BALANCED_SCORES[score] = calculateBalancedScore(score);
+        }
+    }
+
+    final private int[] scores;
+    final private int[] weightedScores;
+    final private int[] balancedScores;
+
+    private int totalScore;
+    private int totalWeightedScore;
+    private int totalBalancedScore;
+
+    /**
+     * Calculates the derived values of a list of scores.
+     *
+     * @param scores the scores.
+     * @param weights the weight of the criteria of each score, as a percentage.
+     */
+    public ScoringKernel(int[] scores, int[] weights) {
+
+        this.scores = scores;
+        this.weightedScores = new int[scores.length];
+        this.balancedScores = new int[scores.length];
+
+        for (int i=0; i<scores.length; i++) {
+
+            int score = scores[i];
+
+            if (score > 0) {
+
+                if (weights[i] > 0)
+                    weightedScores[i] = score * weights[i] / 100;
+
+                balancedScores[i] = lookupBalancedScore(score);
+
+                totalScore += score;
+                totalWeightedScore += weightedScores[i];
+                totalBalancedScore += balancedScores[i];
+            }
+        }
+    }
+
+    /**
+     * Gets the balanced score of a score, which reduces the effect of extreme scores by scoring each half of
+     * the range logarithmically.
+     *
+     * @param score the score.
+     * @return the balanced score.
+     */
+    public static int lookupBalancedScore(int score) {
+
+        if (score >= 0 && score <= MAX_TABLE_SCORE)
+            return BALANCED_SCORES[score];
+
+        return calculateBalancedScore(score);
+    }
+
+    private static int calculateBalancedScore(int score) {
+
+        if (score <= 0)
+            return 0;
+
+        double midScore = Math.log(50);
+        double bScore;
+
+        if (score > 50)
+            bScore = midScore + Math.log(score - 50);
+        else
+            bScore = Math.log(score);
+
+        return (int) ((100*bScore) / (2*midScore));
+    }
+
+    /**
+     * Gets a value as a percentage of a total.
+     *
+     * @param value the value.
+     * @param total the total.
+     * @return the relative value, or zero if either the value or total is not positive.
+     */
+    public static int getRelative(int value, int total) {
+
+        if (value > 0 && total > 0)
+            return (100*value) / total;
+
+        return 0;
+    }
+
+    /**
+     * Gets the number of scores, including zero scores.
+     *
+     * @return the count.
+     */
+    public int getCount() {
+        return scores.length;
+    }
+
+    public int getWeightedScore(int index) {
+        return weightedScores[index];
+    }
+
+    public int getBalancedScore(int index) {
+        return balancedScores[index];
+    }
+
+    public int getRelativeScore(int index) {
+        return getRelative(scores[index], totalScore);
+    }
+
+    public int getRelativeWeightedScore(int index) {
+        return getRelative(weightedScores[index], totalWeightedScore);
+    }
+
+    public int getRelativeBalancedScore(int index) {
+        return getRelative(balancedScores[index], totalBalancedScore);
+    }
+
+    /**
+     * Gets the average score across all scores, including zero scores.
+     *
+     * @return the average, or zero if nothing has been scored.
+     */
+    public int getAverageScore() {
+        return totalScore > 0 ? totalScore / scores.length : 0;
+    }
+
+    public int getAverageWeightedScore() {
+        return totalScore > 0 && totalWeightedScore > 0 ? totalWeightedScore / scores.length : 0;
+    }
+
+    public int getAverageBalancedScore() {
+        return totalScore > 0 ? totalBalancedScore / scores.length : 0;
+    }
+
+}
@@ -56,7 +56,44 @@ public class AnalysisController extends ServiceController {
              
         }        
        
-        return resp.toString();
+        return writeResponse(resp);
+
+    }
+    
+    @RequestMapping(value = "/findGroupAnalysis", method = RequestMethod.GET, produces = {"application/json"})
+    @ResponseBody
+    public String findGroupAnalysis(
+            @RequestParam(value = "groupId", required = true) Integer groupId,
+            @RequestParam(value = "evaluatorId", required = false) Integer evaluatorId,
+            HttpServletRequest request) {
+
+        logger.trace("findGroupAnalysis");
+        ServiceResponse<Analysis> resp; 
+        
+        try {
+            
+            if (evaluatorId == null)
+                evaluatorId = new Integer(-1);
+           
+            JsonObject data = Json.createObjectBuilder()
+                    .add("groupId", groupId)
+                    .add("evaluatorId", evaluatorId)
+                    .build();
+            
+            ServiceRequest<Integer> req = ServiceRequestFactory.getOperationRequest(ServiceRequest.REQUEST_FIND, data);
+
+            resp = evalService.findGroupAnalysis(req);
+
+        } catch (ServiceResponseException valEx) {            
+            resp = valEx.getResponse();
+            
+        } catch (Exception ex) {    
+            ex.printStackTrace();
+            resp = ServiceResponseFactory.getSystemFailResponse("GENERAL_EXCEPTION", messageHelper.getMessage("exception.general", "EVAL028"));
+             
+        }        
+       
+        return writeResponse(resp);
 
     }
     
@@ -93,7 +130,7 @@ public class AnalysisController extends ServiceController {
              
         }        
             
-        return resp.toString();
+        return writeResponse(resp);
 
     }
     
@@ -49,7 +49,7 @@ public class CriteriaController extends ServiceController {
             
         }               
             
-        return resp.toString(); 
+        return writeResponse(resp); 
         
     }
     
@@ -83,7 +83,7 @@ public class CriteriaController extends ServiceController {
         }        
          
         logger.debug(resp.toString());
-        return resp.toString();
+        return writeResponse(resp);
 
     }
 
@@ -118,7 +118,7 @@ public class CriteriaController extends ServiceController {
             
         }
         
-        return resp.toString();
+        return writeResponse(resp);
 
     }
     
@@ -150,7 +150,7 @@ public class CriteriaController extends ServiceController {
             
         }
         
-        return resp.toString();
+        return writeResponse(resp);
     }
     
 
@@ -50,7 +50,7 @@ public class EvalGroupController extends ServiceController {
             
         }               
             
-        return resp.toString(); 
+        return writeResponse(resp); 
         
     }
     
@@ -83,7 +83,7 @@ public class EvalGroupController extends ServiceController {
              
         }        
             
-        return resp.toString();
+        return writeResponse(resp);
 
     }
     
@@ -116,7 +116,7 @@ public class EvalGroupController extends ServiceController {
              
         }        
             
-        return resp.toString();
+        return writeResponse(resp);
 
     }
 
@@ -151,7 +151,7 @@ public class EvalGroupController extends ServiceController {
             
         }
         
-        return resp.toString();
+        return writeResponse(resp);
 
     }
     
@@ -183,7 +183,7 @@ public class EvalGroupController extends ServiceController {
             
         }
         
-        return resp.toString();
+        return writeResponse(resp);
     }
     
     
@@ -49,7 +49,7 @@ public class EvalTreeController extends ServiceController {
         }               
         
         logger.debug(resp.toString());
-        return(resp.toString());
+        return writeResponse(resp);
               
     }
 
@@ -51,7 +51,7 @@ public class EvaluatorController extends ServiceController {
             
         }               
             
-        return resp.toString(); 
+        return writeResponse(resp); 
         
     }
     
@@ -84,7 +84,7 @@ public class EvaluatorController extends ServiceController {
              
         }        
             
-        return resp.toString();
+        return writeResponse(resp);
 
     }
 
@@ -116,7 +116,7 @@ public class EvaluatorController extends ServiceController {
             
         }
         
-        return resp.toString();
+        return writeResponse(resp);
 
     }
     
@@ -148,7 +148,7 @@ public class EvaluatorController extends ServiceController {
             
         }
         
-        return resp.toString();
+        return writeResponse(resp);
     }    
     
 }
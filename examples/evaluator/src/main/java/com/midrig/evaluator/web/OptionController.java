@@ -14,7 +14,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import javax.json.Json;
 import javax.json.JsonObject;
+import java.io.IOException;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -52,20 +54,22 @@ public class OptionController extends ServiceController {
             
         }               
             
-        return resp.toString(); 
+        return writeResponse(resp); 
         
     }
     
     @RequestMapping(value = "/findAll", method = RequestMethod.GET, produces = {"application/json"})
-    @ResponseBody
-    public String findAllOptions(
+    public void findAllOptions(
             @RequestParam(value = "limit", required = false) Integer limit,
             @RequestParam(value = "page", required = false) Integer page,
             @RequestParam(value = "sort", required = false) String sort,
             @RequestParam(value = "start", required = false) Integer start,
             @RequestParam(value = "filter", required = false) String filter,
+            @RequestParam(value = "seek", required = false) String seek,
+            @RequestParam(value = "skipCount", required = false) Boolean skipCount,
             @RequestParam(value = "evaluatorId", required = false) Integer evaluatorId,
-            HttpServletRequest request) {
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
 
         logger.trace("findAllOptions");
         ServiceResponse<Option> resp; 
@@ -74,7 +78,8 @@ public class OptionController extends ServiceController {
           
             JsonObject data = Json.createObjectBuilder().add("evaluatorId", evaluatorId).build();
             
-            PageInfo pageInfo = new PageInfo(limit, page, start, sort, filter);
+            PageInfo pageInfo = new PageInfo(limit, page, start, sort, filter, seek);
+            pageInfo.skipCount = Boolean.TRUE.equals(skipCount);
             ServiceRequest<Integer> req = ServiceRequestFactory.getFindRequest(pageInfo, data);
 
             resp = evalService.findAllOptions(req);
@@ -88,8 +93,7 @@ public class OptionController extends ServiceController {
              
         }        
             
-        logger.debug(resp.toString());
-        return resp.toString();
+        writeResponse(resp, response);
 
     }
 
@@ -123,7 +127,7 @@ public class OptionController extends ServiceController {
             
         }
         
-        return resp.toString();
+        return writeResponse(resp);
 
     }
     
@@ -155,7 +159,7 @@ public class OptionController extends ServiceController {
             
         }
         
-        return resp.toString();
+        return writeResponse(resp);
     }
     
 
@@ -11,8 +11,15 @@ import com.midrig.baff.app.service.ServiceResponseFactory;
 import com.midrig.evaluator.domain.Score;
 import com.midrig.evaluator.service.EvaluatorService;
 import javax.json.Json;
+import javax.json.JsonArray;
 import javax.json.JsonObject;
+import javax.json.JsonValue;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -50,20 +57,22 @@ public class ScoreController extends ServiceController {
             
         }               
             
-        return resp.toString(); 
+        return writeResponse(resp); 
         
     }
     
     @RequestMapping(value = "/findAll", method = RequestMethod.GET, produces = {"application/json"})
-    @ResponseBody
-    public String findAllScores(
+    public void findAllScores(
             @RequestParam(value = "limit", required = false) Integer limit,
             @RequestParam(value = "page", required = false) Integer page,
             @RequestParam(value = "sort", required = false) String sort,
             @RequestParam(value = "start", required = false) Integer start,
             @RequestParam(value = "filter", required = false) String filter,
+            @RequestParam(value = "seek", required = false) String seek,
+            @RequestParam(value = "skipCount", required = false) Boolean skipCount,
             @RequestParam(value = "evaluatorId", required = true) Integer evaluatorId,  
-            HttpServletRequest request) {
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
 
         logger.trace("findAllScores");
         ServiceResponse<Score> resp; 
@@ -72,7 +81,8 @@ public class ScoreController extends ServiceController {
             
             JsonObject data = Json.createObjectBuilder().add("evaluatorId", evaluatorId).build();
             
-            PageInfo pageInfo = new PageInfo(limit, page, start, sort, filter);
+            PageInfo pageInfo = new PageInfo(limit, page, start, sort, filter, seek);
+            pageInfo.skipCount = Boolean.TRUE.equals(skipCount);
             ServiceRequest<Integer> req = ServiceRequestFactory.getFindRequest(pageInfo, data);
           
             resp = evalService.findAllScores(req);
@@ -86,7 +96,7 @@ public class ScoreController extends ServiceController {
              
         }        
             
-        return resp.toString();
+        writeResponse(resp, response);
 
     }
 
@@ -119,7 +129,47 @@ public class ScoreController extends ServiceController {
             
         }
         
-        return resp.toString();
+        return writeResponse(resp);
+
+    }
+
+    @RequestMapping(value = "/saveAll", method = RequestMethod.POST, produces = {"application/json"})
+    @ResponseBody
+    public String saveScores(
+            @RequestParam(value = "data", required = true) String jsonData,
+            @RequestParam(value = "actionCode", required = false) String actionCode,
+            HttpServletRequest request) {
+        
+        logger.trace("saveScores");       
+        ServiceResponse<Score> resp;
+        
+        try {
+        
+            // Each item holds the entity id and data as for a single save
+            JsonArray array = Json.createReader(new StringReader(jsonData)).readArray();
+            List<ServiceRequest<Integer>> items = new ArrayList<>();
+            
+            for (JsonValue value : array) {
+                
+                JsonObjectProcessor jp = new JsonObjectProcessor((JsonObject) value);
+                
+                items.add(ServiceRequestFactory.getSaveRequest(jp.getInteger("entityId", null), jp.getJsonObject().getJsonObject("data"), actionCode));
+            }
+
+            ServiceRequest<Integer> req = ServiceRequestFactory.getSaveBatchRequest(items, actionCode);
+
+            resp = evalService.saveScores(req);
+
+        } catch (ServiceResponseException valEx) {          
+            resp = valEx.getResponse();
+            
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            resp = ServiceResponseFactory.getSystemFailResponse("GENERAL_EXCEPTION", messageHelper.getMessage("exception.general", "EVAL027"));
+            
+        }
+        
+        return writeResponse(resp);
 
     }
 }
\ No newline at end of file
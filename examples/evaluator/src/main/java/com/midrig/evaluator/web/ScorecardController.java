@@ -49,7 +49,7 @@ public class ScorecardController extends ServiceController {
             
         }               
          
-        return resp.toString(); 
+        return writeResponse(resp); 
         
     }
     
@@ -82,7 +82,7 @@ public class ScorecardController extends ServiceController {
              
         }        
             
-        return resp.toString();
+        return writeResponse(resp);
 
     }
 
@@ -118,7 +118,7 @@ public class ScorecardController extends ServiceController {
             
         }
         
-        return resp.toString();
+        return writeResponse(resp);
 
     }
     
@@ -151,7 +151,7 @@ public class ScorecardController extends ServiceController {
             
         }
         
-        return resp.toString();
+        return writeResponse(resp);
     }
     
 
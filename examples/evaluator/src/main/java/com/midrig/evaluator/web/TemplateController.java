@@ -52,7 +52,7 @@ public class TemplateController extends ServiceController {
             
         }               
          
-        return resp.toString(); 
+        return writeResponse(resp); 
         
     }
 
@@ -86,7 +86,7 @@ public class TemplateController extends ServiceController {
              
         }        
             
-        return resp.toString();
+        return writeResponse(resp);
 
     }
     
@@ -119,7 +119,7 @@ public class TemplateController extends ServiceController {
              
         }        
             
-        return resp.toString();
+        return writeResponse(resp);
 
     }
 
@@ -155,7 +155,7 @@ public class TemplateController extends ServiceController {
             
         }
         
-        return resp.toString();
+        return writeResponse(resp);
 
     }
     
@@ -188,7 +188,7 @@ public class TemplateController extends ServiceController {
             
         }
         
-        return resp.toString();
+        return writeResponse(resp);
     }
     
 
@@ -7,7 +7,7 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter
 
 @EnableWebMvc
 @Configuration
-@ComponentScan({"com.midrig.evaluator.web","com.midrig.baff.utility.usersecurity", "com.midrig.baff.utility.refdata"})
+@ComponentScan({"com.midrig.evaluator.web","com.midrig.baff.utility.usersecurity", "com.midrig.baff.utility.refdata", "com.midrig.baff.utility.metrics"})
 public class WebAppConfig extends WebMvcConfigurerAdapter {
 
 